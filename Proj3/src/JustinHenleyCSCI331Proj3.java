@@ -5,11 +5,29 @@ Author:         Justin Henley, jahenley@mail.fhsu.edu
 Date:           2021-04-15
  */
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
 
 // Main class drives the interactive program
 public class JustinHenleyCSCI331Proj3 {
     public static void main(String[] args) {
+        // Run the concurrent allocator stress test instead of the interactive program
+        if (args.length > 0 && args[0].equals("stress")) {
+            stressTest();
+            return;
+        }
+
         Scanner input = new Scanner(System.in);
 
         // Read in initial conditions of system
@@ -40,6 +58,125 @@ public class JustinHenleyCSCI331Proj3 {
         }
     }
 
+    // Stress tests concurrentSystem with one thread per process, each making random requests and releases,
+    // while a checker thread repeatedly confirms the state stays consistent and safe, then again in waiting mode
+    // Postcondition: prints the number of requests granted and denied, retries, stalls and invariant violations found
+    private static void stressTest() {
+        final int processes = 300, resources = 6, operations = 500;
+        Random random = new Random(331);
+        int[] totalUnits = new int[resources];
+        int[][] maxClaims = new int[processes][resources];
+        for (int j = 0; j < resources; j++) totalUnits[j] = 40 + random.nextInt(40);
+        for (int i = 0; i < processes; i++) {
+            for (int j = 0; j < resources; j++) maxClaims[i][j] = random.nextInt(totalUnits[j] / 2 + 1);
+        }
+        concurrentSystem system = new concurrentSystem(processes, resources, totalUnits, maxClaims);
+
+        AtomicLong granted = new AtomicLong(), denied = new AtomicLong(), violations = new AtomicLong();
+        Thread[] workers = new Thread[processes];
+        for (int i = 0; i < processes; i++) {
+            final int process = i;
+            workers[i] = new Thread(() -> {
+                Random own = new Random(process);
+                int[] held = new int[resources];
+                for (int k = 0; k < operations; k++) {
+                    int resource = own.nextInt(resources);
+                    int claim = maxClaims[process][resource] - held[resource];
+                    if (held[resource] > 0 && (claim == 0 || own.nextBoolean())) {
+                        int units = 1 + own.nextInt(held[resource]);
+                        system.release(process, resource, units);
+                        held[resource] -= units;
+                    }
+                    else if (claim > 0) {
+                        // Request no more than the rest of the claim, so denials come from the Banker's Algorithm
+                        int units = 1 + own.nextInt(Math.min(3, claim));
+                        if (system.request(process, resource, units).equals("Request successful")) {
+                            granted.incrementAndGet();
+                            held[resource] += units;
+                        }
+                        else denied.incrementAndGet();
+                    }
+                }
+                // Finish by releasing everything held
+                for (int j = 0; j < resources; j++) system.release(process, j, held[j]);
+            });
+        }
+
+        Thread checker = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!system.checkInvariants(totalUnits)) violations.incrementAndGet();
+            }
+        });
+
+        long start = System.nanoTime();
+        checker.start();
+        for (Thread worker : workers) worker.start();
+        try {
+            for (Thread worker : workers) worker.join();
+            checker.interrupt();
+            checker.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // Every unit must be back once all processes have released everything
+        if (!system.checkInvariants(totalUnits) || !Arrays.equals(system.available(), totalUnits))
+            violations.incrementAndGet();
+        System.out.printf("Stress test: %d threads in %.1f s, %d granted, %d denied, %d retries, %d invariant violations%n",
+                processes, (System.nanoTime() - start) / 1e9, granted.get(), denied.get(), system.retries(), violations.get());
+
+        // Waiting mode: every request within the claim must eventually be granted, as long as processes keep releasing
+        AtomicLong stalls = new AtomicLong();
+        for (int i = 0; i < processes; i++) {
+            final int process = i;
+            workers[i] = new Thread(() -> {
+                Random own = new Random(-1 - process);
+                int[] held = new int[resources];
+                for (int k = 0; k < operations / 10; k++) {
+                    int resource = own.nextInt(resources);
+                    int claim = maxClaims[process][resource] - held[resource];
+                    if (held[resource] > 0 && (claim == 0 || own.nextBoolean())) {
+                        system.release(process, resource, held[resource]);
+                        held[resource] = 0;
+                    }
+                    else if (claim > 0) {
+                        int units = 1 + own.nextInt(Math.min(3, claim));
+                        CompletableFuture<String> result = system.requestWhenAvailable(process, resource, units);
+                        try {
+                            if (result.get(60, TimeUnit.SECONDS).equals("Request successful"))
+                                held[resource] += units;
+                            else violations.incrementAndGet();
+                        }
+                        catch (TimeoutException | ExecutionException | InterruptedException e) {
+                            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                            else stalls.incrementAndGet();
+                            // Withdraw the request, or if it was granted meanwhile, take the units so they are released below
+                            if (!result.cancel(false) && result.join().equals("Request successful"))
+                                held[resource] += units;
+                            break;
+                        }
+                    }
+                }
+                for (int j = 0; j < resources; j++) system.release(process, j, held[j]);
+            });
+        }
+        start = System.nanoTime();
+        for (Thread worker : workers) worker.start();
+        try {
+            for (Thread worker : workers) worker.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!system.checkInvariants(totalUnits) || !Arrays.equals(system.available(), totalUnits))
+            violations.incrementAndGet();
+        System.out.printf("Waiting mode: %d threads in %.1f s, %d stalled requests, %d invariant violations%n",
+                processes, (System.nanoTime() - start) / 1e9, stalls.get(), violations.get());
+    }
+
     // Prompts the user for the initial state of the system, and returns the initialization information
     // in an Object array.
     // Precondition: init is an Object array of length 4
@@ -99,6 +236,7 @@ public class JustinHenleyCSCI331Proj3 {
         System.out.println("\nSystem representation created, you may begin making requests or releases.");
         System.out.println("To make a request, type request(i,j,k)");
         System.out.println("To make a release, type release(i,j,k)");
+        System.out.println("To request units of every resource at once, type requestall(i,k0,k1,...) with a k for each resource");
         System.out.println("i = a process number, j = a resource number, k = # of units of resource j requested or released.");
         System.out.println("Type exit to end program");
     }
@@ -110,8 +248,23 @@ public class JustinHenleyCSCI331Proj3 {
         // Tokenize input string to separate expected arguments
         String[] entrySplit = entry.split("[(\\(,\\)]+");
 
+        // Process a multi-resource request, requestall(i,k0,k1,...) for k0 units of resource 0 and so on
+        if (entrySplit[0].equals("requestall") && entrySplit.length > 2) {
+            int[] units = new int[entrySplit.length - 2];
+            int processNumber;
+            try {
+                processNumber = Integer.parseInt(entrySplit[1]);
+                for (int j = 0; j < units.length; j++) {
+                    units[j] = Integer.parseInt(entrySplit[j + 2]);
+                }
+            }
+            catch (Exception e) {
+                return "Invalid argument(s), please enter integers only.";
+            }
+            return state.request(processNumber, units) + deadState.request(processNumber, units);
+        }
         // Check for valid number of arguments
-        if (entrySplit.length != 4) {
+        else if (entrySplit.length != 4) {
             return "Invalid entry";
         }
         // Process a request or release command
@@ -194,12 +347,123 @@ class systemRepresentation {
         currentAllocation[processNumber][resourceNumber] += unitsRequested;
 
         // If new state is safe, return and confirm;
-        if (isSafeState()) return "Request successful";
+        if (isSafeStateWorklist()) return "Request successful";
         // Otherwise, reverse the allocation, return and declare unsafe
         release(processNumber, resourceNumber, unitsRequested);
         return "Request denied: Unsafe state";
     }
 
+    // Attempts to complete a request by processNumber for unitsRequested[j] units of each resource j at once,
+    // granting all of them or none with a single safety check
+    // Postcondition: currentAllocation and currentUnitsAvailable are updated if the new state is determined safe
+    //                returns a string detailing the result of the request attempt, as the single resource request does
+    public String request(int processNumber, int[] unitsRequested) {
+        String invalid = checkRequest(processNumber, unitsRequested, currentUnitsAvailable);
+        if (invalid != null) return invalid;
+
+        // Grant the request temporarily
+        grant(processNumber, unitsRequested, 1);
+
+        // If new state is safe, return and confirm;
+        if (isSafeStateWorklist()) return "Request successful";
+        // Otherwise, reverse the allocation, return and declare unsafe
+        grant(processNumber, unitsRequested, -1);
+        return "Request denied: Unsafe state";
+    }
+
+    // Attempts a batch of multi-resource requests together, the request at index r being unitsRequested[r] by
+    // processNumbers[r], sharing one safety analysis among them in the usual case
+    // Every request that is valid and fits in the units still available, taken in order, is granted temporarily.
+    // While the resulting state is unsafe, the last of those grants to a process that can no longer be reduced is
+    // taken back and the analysis repeated. Each deferred request is then tried once more on its own, in order,
+    // so no request is deferred that could be granted on the final state
+    // Precondition: processNumbers and unitsRequested have the same length
+    // Postcondition: returns a string per request, starting "Request successful" if it was granted,
+    //                "Request denied" if it can never be granted, or "Request deferred" if it may succeed later
+    public String[] request(int[] processNumbers, int[][] unitsRequested) {
+        int requests = processNumbers.length;
+        String[] results = new String[requests];
+        boolean[] granted = new boolean[requests];
+
+        // Grant every request that could be granted on its own, as long as units remain
+        for (int r = 0; r < requests; r++) {
+            String invalid = checkRequest(processNumbers[r], unitsRequested[r], currentUnitsAvailable);
+            if (invalid == null) {
+                grant(processNumbers[r], unitsRequested[r], 1);
+                granted[r] = true;
+                results[r] = "Request successful";
+            }
+            else if (invalid.startsWith("Requested failed"))
+                results[r] = "Request deferred: Units requested exceeds units available.";
+            else
+                results[r] = invalid.replace("Request failed", "Request denied");
+        }
+
+        // The state before the batch was safe, so while the state is unsafe some process holding a grant from the
+        // batch cannot be reduced: were every such process reduced, the others would be left as before the batch
+        boolean[] reduced = new boolean[numberOfProcesses];
+        boolean tookBack = false;
+        while (reduce(currentUnitsAvailable, currentAllocation, maxClaimsOfProcesses, reduced) < numberOfProcesses) {
+            int r = requests - 1;
+            while (r >= 0 && (!granted[r] || reduced[processNumbers[r]])) r--;
+            // Only a subclass that allows unsafe states can start the batch from one, then no grant is to blame
+            if (r < 0) break;
+            grant(processNumbers[r], unitsRequested[r], -1);
+            granted[r] = false;
+            results[r] = "Request deferred: Unsafe state";
+            tookBack = true;
+            Arrays.fill(reduced, false);
+        }
+
+        // Taking grants back leaves more units available, so retry what was deferred. A grant only lowers the units
+        // available, so a request that fails here cannot succeed after a later one, and one pass is enough
+        for (int r = 0; tookBack && r < requests; r++) {
+            if (!results[r].startsWith("Request deferred")) continue;
+            String invalid = checkRequest(processNumbers[r], unitsRequested[r], currentUnitsAvailable);
+            if (invalid != null) {
+                // Grants to the same process earlier in the batch may have left no room under its maximum claim
+                results[r] = invalid.startsWith("Requested failed")
+                        ? "Request deferred: Units requested exceeds units available."
+                        : invalid.replace("Request failed", "Request denied");
+                continue;
+            }
+            grant(processNumbers[r], unitsRequested[r], 1);
+            if (isSafeStateWorklist())
+                results[r] = "Request successful";
+            else {
+                grant(processNumbers[r], unitsRequested[r], -1);
+                results[r] = "Request deferred: Unsafe state";
+            }
+        }
+        return results;
+    }
+
+    // Checks a multi-resource request against the given available units without changing anything
+    // Postcondition: returns null if the request can be granted on its own ignoring safety,
+    //                otherwise the message the single resource request gives for the first problem found
+    protected String checkRequest(int processNumber, int[] unitsRequested, int[] available) {
+        if (processNumber < 0 || processNumber >= numberOfProcesses || unitsRequested.length != numberOfResources)
+            return "Request failed: Invalid process or resource number";
+        for (int j = 0; j < numberOfResources; j++) {
+            if (unitsRequested[j] < 0 || currentAllocation[processNumber][j] + unitsRequested[j] > maxClaimsOfProcesses[processNumber][j])
+                return "Request failed: Maximum claim of process exceeded.";
+        }
+        for (int j = 0; j < numberOfResources; j++) {
+            if (available[j] < unitsRequested[j])
+                return "Requested failed: Units requested exceeds units available.";
+        }
+        return null;
+    }
+
+    // Moves unitsRequested from available to processNumber's allocation when sign is 1, or back when sign is -1
+    // Precondition: the move leaves no count negative
+    protected void grant(int processNumber, int[] unitsRequested, int sign) {
+        for (int j = 0; j < numberOfResources; j++) {
+            currentUnitsAvailable[j] -= sign * unitsRequested[j];
+            currentAllocation[processNumber][j] += sign * unitsRequested[j];
+        }
+    }
+
     // Releases unitsReleased units of resourceNumber held by processNumber
     // Postconditions: currentAllocation and currentUnitsAvailable are updated
     //                 returns a string detailing the result of the release attempt
@@ -254,6 +518,81 @@ class systemRepresentation {
         return true;
     }
 
+    // Checks if the current state is safe under the Banker's Algorithm, giving the same answer as isSafeState
+    // Rather than rescanning every process after each reduction, keeps for each process the number of resources
+    // it still needs more of than are free, and for each resource the processes short of it sorted by need.
+    // When a reduction frees units of a resource, a pointer advances past the processes whose need is now met,
+    // and a process joins the worklist of reducible processes once it is short of nothing
+    // Costs O(P*R + P*log(P)*R) rather than the O(P*P*R) of isSafeState
+    // Postcondition: returns true if the state is safe from deadlock
+    public boolean isSafeStateWorklist() {
+        return isSafeStateWorklist(currentUnitsAvailable, currentAllocation, maxClaimsOfProcesses);
+    }
+
+    // Checks if the state given by available, allocation and maxClaims is safe, see isSafeStateWorklist above
+    // Precondition: allocation and maxClaims have a row per process and a column per resource of available
+    // Postcondition: returns true if the state is safe from deadlock, none of the arrays are modified
+    static boolean isSafeStateWorklist(int[] available, int[][] allocation, int[][] maxClaims) {
+        return reduce(available, allocation, maxClaims, new boolean[allocation.length]) == allocation.length;
+    }
+
+    // Reduces as many processes as possible from the state given by available, allocation and maxClaims,
+    // by the worklist method of isSafeStateWorklist
+    // Precondition: allocation and maxClaims have a row per process and a column per resource of available,
+    //               reduced has an entry per process
+    // Postcondition: reduced[i] is true if process i could be reduced, returns the number of processes reduced
+    static int reduce(int[] available, int[][] allocation, int[][] maxClaims, boolean[] reduced) {
+        int numberOfProcesses = allocation.length;
+        int numberOfResources = available.length;
+        int[] free = available.clone();
+        // Number of resources each process needs more units of than are free
+        int[] shortOf = new int[numberOfProcesses];
+        // For each resource, the processes short of it in order of need, each packed as need << 32 | process
+        long[][] waiting = new long[numberOfResources][];
+        // For each resource, the number of processes in waiting whose need has since been met
+        int[] met = new int[numberOfResources];
+
+        for (int j = 0; j < numberOfResources; j++) {
+            int count = 0;
+            long[] byNeed = new long[numberOfProcesses];
+            for (int i = 0; i < numberOfProcesses; i++) {
+                int need = maxClaims[i][j] - allocation[i][j];
+                if (need > free[j]) {
+                    byNeed[count++] = (long) need << 32 | i;
+                    shortOf[i]++;
+                }
+            }
+            waiting[j] = Arrays.copyOf(byNeed, count);
+            Arrays.sort(waiting[j]);
+        }
+
+        // Processes that can be reduced, each added once
+        int[] worklist = new int[numberOfProcesses];
+        int size = 0;
+        for (int i = 0; i < numberOfProcesses; i++) {
+            if (shortOf[i] == 0) worklist[size++] = i;
+        }
+
+        int finished = 0;
+        while (size > 0) {
+            // Reduce a process and release its resources
+            int i = worklist[--size];
+            reduced[i] = true;
+            finished++;
+            for (int j = 0; j < numberOfResources; j++) {
+                if (allocation[i][j] == 0) continue;
+                free[j] += allocation[i][j];
+                // Wake the processes whose need of resource j is now met
+                while (met[j] < waiting[j].length && (int) (waiting[j][met[j]] >>> 32) <= free[j]) {
+                    int waiter = (int) waiting[j][met[j]++];
+                    if (--shortOf[waiter] == 0) worklist[size++] = waiter;
+                }
+            }
+        }
+
+        return finished;
+    }
+
     // Checks if a process is reducible
     // Postcondition: Returns true if the process is reducible
     public boolean needLess(int process, int[] free) {
@@ -270,29 +609,41 @@ class systemRepresentation {
 
 // Extends systemRepresentation to create an unsafe system representation that allows for and detects deadlock
 class deadlockSystem extends systemRepresentation {
+    // Holders of each resource, kept up to date on every request and release so the wait-for graph is never rebuilt
+    // holders[j][0..holderCount[j]-1] are the processes holding units of resource j, process i at holderIndex[i][j]
+    private final int[][] holders;
+    private final int[] holderCount;
+    private final int[][] holderIndex;
+    // Processes known to be deadlocked, see findDeadlocked
+    private final boolean[] deadlocked;
+    private int[] deadlockedProcesses = new int[0];
+    // Scratch space for searching the wait-for graph, a process is visited when its mark equals the current search
+    private final int[] visitMark;
+    private int search;
+    private final int[] closure;
+    private int closureSize;  // Number of processes in closure after the last call to findDeadlocked
+
     public deadlockSystem(int numberOfProcesses, int numberOfResources, int[] resourceUnitsAvailable, int[][] maxClaimsOfProcesses) {
         super(numberOfProcesses, numberOfResources, resourceUnitsAvailable, maxClaimsOfProcesses);
+        holders = new int[numberOfResources][numberOfProcesses];
+        holderCount = new int[numberOfResources];
+        holderIndex = new int[numberOfProcesses][numberOfResources];
+        deadlocked = new boolean[numberOfProcesses];
+        visitMark = new int[numberOfProcesses];
+        closure = new int[numberOfProcesses];
     }
 
     // Determines if the current state is a deadlocked state
-    // Postcondition: Returns true if the current state is deadlocked
+    // Postcondition: Returns true if any process is deadlocked, see deadlockedProcesses
     public boolean isDeadlocked() {
-        // If a process cannot finish even if given all resources, then the system is deadlocked
-        int count = 0; // Number of processes that cannot finish
-        boolean deadlockDetected;
-        // Iterate over each process
-        for(int i = 0; i < numberOfProcesses; i++) {
-            deadlockDetected = false;
-            // Iterate over each resource for process
-            for(int j = 0; !deadlockDetected && j < numberOfResources; j++) {
-                if(maxClaimsOfProcesses[i][j] - currentAllocation[i][j] > currentUnitsAvailable[j])
-                    deadlockDetected = true;  // This process cannot be released
-            }
-            if (deadlockDetected)
-                count ++;
-        }
-        // If no processes can finish, deadlock has been reached
-        return count == numberOfProcesses;
+        return deadlockedProcesses.length > 0;
+    }
+
+    // Postcondition: returns the processes currently known to be deadlocked, in increasing order
+    // A process is deadlocked if it cannot be reduced even once every process it waits for, directly or not, is reduced.
+    // This finds deadlocks among a subset of processes too, not only once every process is stuck
+    public int[] deadlockedProcesses() {
+        return deadlockedProcesses.clone();
     }
 
     // A copy of request from systemRepresentation, but only speaks up when deadlock is found
@@ -315,10 +666,28 @@ class deadlockSystem extends systemRepresentation {
         currentUnitsAvailable[resourceNumber] -= unitsRequested;
         // Update current allocation
         currentAllocation[processNumber][resourceNumber] += unitsRequested;
+        updateHolders(processNumber, resourceNumber);
 
         // If new state is deadlocked, return and announce;
-        if (isDeadlocked()) return " ** Deadlock detected in unsafe version **";
-        else return "";
+        return afterRequest(processNumber);
+    }
+
+    // A copy of the multi-resource request from systemRepresentation, but only speaks up when deadlock is found
+    public String request(int processNumber, int[] unitsRequested) {
+        if (checkRequest(processNumber, unitsRequested, currentUnitsAvailable) != null) return "";
+        grant(processNumber, unitsRequested, 1);
+        // If new state is deadlocked, return and announce;
+        return afterRequest(processNumber);
+    }
+
+    // The batch request of systemRepresentation, but grants every valid request that fits, safe or not, in order
+    // Postcondition: returns a string per request as the multi-resource request above does
+    public String[] request(int[] processNumbers, int[][] unitsRequested) {
+        String[] results = new String[processNumbers.length];
+        for (int r = 0; r < processNumbers.length; r++) {
+            results[r] = request(processNumbers[r], unitsRequested[r]);
+        }
+        return results;
     }
 
     // Copy of release from systemRepresentation, but return value is always "" since it doesn't need to communicate with user
@@ -328,9 +697,453 @@ class deadlockSystem extends systemRepresentation {
             // Release the units
             currentAllocation[processNumber][resourceNumber] -= unitsReleased;
             currentUnitsAvailable[resourceNumber] += unitsReleased;
+            updateHolders(processNumber, resourceNumber);
+
+            // A release never deadlocks a process, but may free some of those already deadlocked
+            if (deadlockedProcesses.length > 0) {
+                for (int i : deadlockedProcesses) deadlocked[i] = false;
+                findDeadlocked(deadlockedProcesses, deadlockedProcesses.length);
+                int count = 0;
+                for (int k = 0; k < closureSize; k++) {
+                    if (deadlocked[closure[k]]) count++;
+                }
+                int[] remaining = new int[count];
+                count = 0;
+                for (int k = 0; k < closureSize; k++) {
+                    if (deadlocked[closure[k]]) remaining[count++] = closure[k];
+                }
+                Arrays.sort(remaining);
+                deadlockedProcesses = remaining;
+            }
         }
         return "";
     }
+
+    // Keeps the holders of each resource up to date when the multi-resource request of systemRepresentation grants units
+    protected void grant(int processNumber, int[] unitsRequested, int sign) {
+        super.grant(processNumber, unitsRequested, sign);
+        for (int j = 0; j < numberOfResources; j++) {
+            if (unitsRequested[j] != 0) updateHolders(processNumber, j);
+        }
+    }
+
+    // Looks for a deadlock involving processNumber after a request by it, and announces every deadlocked process
+    // A request cannot free a process already deadlocked, and if processNumber can still be reduced then so can every
+    // process that could before, so only the processes processNumber waits for need to be reduced. Processes that are
+    // stuck only because they wait for a deadlocked process are not named
+    // Postcondition: returns the deadlock message if any process is deadlocked, otherwise ""
+    private String afterRequest(int processNumber) {
+        findDeadlocked(new int[] {processNumber}, 1);
+        if (deadlocked[processNumber]) {
+            // Add the processes just found to those already known
+            int[] all = Arrays.copyOf(deadlockedProcesses, deadlockedProcesses.length + closureSize);
+            int count = deadlockedProcesses.length;
+            for (int k = 0; k < closureSize; k++) {
+                if (deadlocked[closure[k]]) all[count++] = closure[k];
+            }
+            Arrays.sort(all, 0, count);
+            int distinct = 0;
+            for (int k = 0; k < count; k++) {
+                if (distinct == 0 || all[distinct - 1] != all[k]) all[distinct++] = all[k];
+            }
+            deadlockedProcesses = Arrays.copyOf(all, distinct);
+        }
+        if (deadlockedProcesses.length == 0) return "";
+        return " ** Deadlock detected in unsafe version among processes " + Arrays.toString(deadlockedProcesses) + " **";
+    }
+
+    // Reduces the part of the system the given processes wait for, directly or not, and marks every process in that
+    // part that cannot be reduced as deadlocked. A process waits for the holders of each resource it needs more of
+    // than is available. Reduction of that part alone decides each of its processes exactly, as any process that
+    // could free units one of them is short of is part of it (Holt). Costs time in the size of that part only
+    // Postcondition: closure[0..closureSize-1] holds the part reduced
+    private void findDeadlocked(int[] from, int count) {
+        search++;
+        closureSize = 0;
+        for (int k = 0; k < count; k++) {
+            if (visitMark[from[k]] != search) {
+                visitMark[from[k]] = search;
+                closure[closureSize++] = from[k];
+            }
+        }
+        // Breadth-first search of the wait-for graph
+        for (int next = 0; next < closureSize; next++) {
+            int i = closure[next];
+            for (int j = 0; j < numberOfResources; j++) {
+                if (maxClaimsOfProcesses[i][j] - currentAllocation[i][j] <= currentUnitsAvailable[j]) continue;
+                for (int h = 0; h < holderCount[j]; h++) {
+                    int holder = holders[j][h];
+                    if (visitMark[holder] != search) {
+                        visitMark[holder] = search;
+                        closure[closureSize++] = holder;
+                    }
+                }
+            }
+        }
+
+        // Reduce the processes found, sharing the rows of the full system
+        int[][] allocation = new int[closureSize][];
+        int[][] maxClaims = new int[closureSize][];
+        for (int k = 0; k < closureSize; k++) {
+            allocation[k] = currentAllocation[closure[k]];
+            maxClaims[k] = maxClaimsOfProcesses[closure[k]];
+        }
+        boolean[] reduced = new boolean[closureSize];
+        reduce(currentUnitsAvailable, allocation, maxClaims, reduced);
+        for (int k = 0; k < closureSize; k++) {
+            deadlocked[closure[k]] = !reduced[k];
+        }
+    }
+
+    // Adds or removes processNumber from the holders of resourceNumber to match its allocation
+    private void updateHolders(int processNumber, int resourceNumber) {
+        int[] list = holders[resourceNumber];
+        int index = holderIndex[processNumber][resourceNumber];
+        boolean listed = index < holderCount[resourceNumber] && list[index] == processNumber;
+        if (currentAllocation[processNumber][resourceNumber] > 0 && !listed) {
+            holderIndex[processNumber][resourceNumber] = holderCount[resourceNumber];
+            list[holderCount[resourceNumber]++] = processNumber;
+        }
+        else if (currentAllocation[processNumber][resourceNumber] == 0 && listed) {
+            // Move the last holder into the gap
+            int last = list[--holderCount[resourceNumber]];
+            list[index] = last;
+            holderIndex[last][resourceNumber] = index;
+        }
+    }
+}
+
+// A thread-safe version of systemRepresentation, granting only requests that leave the system in a safe state
+// Requests are optimistic: a request copies the state without blocking other threads, checks the safety of granting it
+// on that copy with no lock held, then commits under a brief write lock if no other request was granted meanwhile.
+// Releases in between do not matter, since releasing units leaves a safe state safe, so only a grant by another thread
+// makes a request check again. Safety checks of concurrent requests therefore run in parallel
+// In waiting mode a request that cannot be granted yet is parked instead of denied, on the queue of each resource a
+// release of which could let it be granted: its own resource if too few units are available, otherwise every resource
+// some process is short of once the state is reduced as far as it goes. Releasing any other resource leaves those
+// processes short, and grants only make things worse, so a release only re-evaluates the requests on its queue
+class concurrentSystem {
+    private final int numberOfProcesses;
+    private final int numberOfResources;
+    private final int[][] maxClaimsOfProcesses;
+    // Guarded by lock
+    private final int[] currentUnitsAvailable;
+    private final int[][] currentAllocation;
+    private long grantVersion;  // Number of requests granted so far
+    private final StampedLock lock = new StampedLock();
+    private final AtomicLong retries = new AtomicLong();
+    // Parked requests, guarded by lock
+    private final List<ArrayDeque<pendingRequest>> waiting;  // Per resource, requests a release of it may let be granted
+    private final boolean[] blocking;                        // Queues a request tryGrant could not grant belongs on
+    private final boolean[] reduced;                         // Scratch space of tryGrant
+    private final int[] free;                                // Scratch space of tryGrant
+
+    // A request parked in waiting mode, completed with "Request successful" once granted
+    private final class pendingRequest {
+        final int processNumber, resourceNumber, unitsRequested;
+        // Cancelling the future, or completing it exceptionally as a timeout does, first withdraws the request,
+        // and fails once the request is granted, so units are never left allocated to a request no one waits for
+        final CompletableFuture<String> result = new CompletableFuture<String>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return withdraw() && super.cancel(mayInterruptIfRunning);
+            }
+
+            @Override
+            public boolean completeExceptionally(Throwable ex) {
+                return withdraw() && super.completeExceptionally(ex);
+            }
+        };
+        // Guarded by lock
+        boolean granted;
+        final boolean[] queuedOn = new boolean[numberOfResources];  // Queues of waiting holding the request
+
+        pendingRequest(int processNumber, int resourceNumber, int unitsRequested) {
+            this.processNumber = processNumber;
+            this.resourceNumber = resourceNumber;
+            this.unitsRequested = unitsRequested;
+        }
+
+        // Takes the request off every queue unless it was already granted
+        // Postcondition: returns true if the request will not be granted
+        private boolean withdraw() {
+            long stamp = lock.writeLock();
+            try {
+                if (granted) return false;
+                for (int j = 0; j < numberOfResources; j++) {
+                    if (queuedOn[j]) waiting.get(j).remove(this);
+                    queuedOn[j] = false;
+                }
+                return true;
+            }
+            finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    // Precondition: currentUnitsAvailable has numberOfResources entries, maxClaimsOfProcesses numberOfProcesses rows of as many
+    // Postcondition: the system holds its own copies of the arrays, no units are allocated
+    public concurrentSystem(int numberOfProcesses, int numberOfResources, int[] currentUnitsAvailable, int[][] maxClaimsOfProcesses) {
+        this.numberOfProcesses = numberOfProcesses;
+        this.numberOfResources = numberOfResources;
+        this.currentUnitsAvailable = currentUnitsAvailable.clone();
+        this.maxClaimsOfProcesses = new int[numberOfProcesses][];
+        for (int i = 0; i < numberOfProcesses; i++) this.maxClaimsOfProcesses[i] = maxClaimsOfProcesses[i].clone();
+        currentAllocation = new int[numberOfProcesses][numberOfResources];
+        waiting = new ArrayList<>();
+        for (int j = 0; j < numberOfResources; j++) waiting.add(new ArrayDeque<>());
+        blocking = new boolean[numberOfResources];
+        reduced = new boolean[numberOfProcesses];
+        free = new int[numberOfResources];
+    }
+
+    // Checks that the process and resource number from a given command are within the valid ranges
+    // Postcondition: returns true if both processNumber and resourceNumber are valid indices
+    private boolean checkValid(int processNumber, int resourceNumber) {
+        return processNumber >= 0 && processNumber < numberOfProcesses && resourceNumber >= 0 && resourceNumber < numberOfResources;
+    }
+
+    // Attempts to complete a request by processNumber for unitsRequested units of resourceNumber, may be called by any thread
+    // Postcondition: the units are allocated if the new state is determined safe
+    //                returns a string detailing the result of the request attempt, as systemRepresentation.request does
+    public String request(int processNumber, int resourceNumber, int unitsRequested) {
+        // Check for valid resource and process indices
+        if (!checkValid(processNumber, resourceNumber))
+            return "Request failed: Invalid process or resource number";
+        // A negative request would hand units back without a release, as the vector checkRequest rejects it
+        if (unitsRequested < 0)
+            return "Request failed: Maximum claim of process exceeded.";
+
+        int[] available = new int[numberOfResources];
+        int[][] allocation = new int[numberOfProcesses][numberOfResources];
+        while (true) {
+            long version = snapshot(available, allocation);
+
+            // Check the request against the copy, so a denial reflects the state when the copy was taken
+            if (available[resourceNumber] < unitsRequested) {
+                return "Requested failed: Units requested exceeds units available.";
+            }
+            if (allocation[processNumber][resourceNumber] + unitsRequested > maxClaimsOfProcesses[processNumber][resourceNumber]) {
+                return "Request failed: Maximum claim of process exceeded.";
+            }
+            available[resourceNumber] -= unitsRequested;
+            allocation[processNumber][resourceNumber] += unitsRequested;
+            if (!systemRepresentation.isSafeStateWorklist(available, allocation, maxClaimsOfProcesses))
+                return "Request denied: Unsafe state";
+
+            // Commit unless another request was granted since the copy, in which case check again
+            long stamp = lock.writeLock();
+            try {
+                if (grantVersion == version) {
+                    currentUnitsAvailable[resourceNumber] -= unitsRequested;
+                    currentAllocation[processNumber][resourceNumber] += unitsRequested;
+                    grantVersion++;
+                    return "Request successful";
+                }
+            }
+            finally {
+                lock.unlockWrite(stamp);
+            }
+            retries.incrementAndGet();
+        }
+    }
+
+    // Releases unitsReleased units of resourceNumber held by processNumber, may be called by any thread
+    // Postcondition: returns a string detailing the result of the release attempt, as systemRepresentation.release does
+    public String release(int processNumber, int resourceNumber, int unitsReleased) {
+        // Check for valid resource and process indices
+        if (!checkValid(processNumber, resourceNumber))
+            return "Release failed: Invalid process or resource number";
+        if (unitsReleased < 0)
+            return "Release failed: Number of units to release is negative";
+
+        List<pendingRequest> granted = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            // Check if quantity of resource to release is actually claimed by process
+            if (currentAllocation[processNumber][resourceNumber] < unitsReleased) {
+                return "Release failed: Number of units to release exceeds current allocation by process";
+            }
+            currentAllocation[processNumber][resourceNumber] -= unitsReleased;
+            currentUnitsAvailable[resourceNumber] += unitsReleased;
+
+            // Only requests parked on this resource can be granted now
+            retryParked(resourceNumber, granted);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+
+        // Wake the waiters outside the lock, so their callbacks cannot hold it up. A granted request can no longer be
+        // cancelled, but its future may still have been completed by someone else, then the units are given back
+        for (pendingRequest waiter : granted) {
+            if (!waiter.result.complete("Request successful"))
+                release(waiter.processNumber, waiter.resourceNumber, waiter.unitsRequested);
+        }
+        return "Release successful.";
+    }
+
+    // Waiting mode request: like request, but a request that cannot be granted yet because too few units are
+    // available or the state would be unsafe waits until a release lets it be granted, instead of being denied
+    // Postcondition: returns a future completed with "Request successful" once the units are allocated, or at once
+    //                with the failure message of request if the request is invalid or exceeds the maximum claim
+    //                Cancelling the future withdraws the request if it has not been granted
+    public CompletableFuture<String> requestWhenAvailable(int processNumber, int resourceNumber, int unitsRequested) {
+        // Try the optimistic path first, most requests are granted or fail outright
+        String result = request(processNumber, resourceNumber, unitsRequested);
+        if (!result.equals("Requested failed: Units requested exceeds units available.") && !result.equals("Request denied: Unsafe state"))
+            return CompletableFuture.completedFuture(result);
+
+        // Check again under the write lock before parking, so a release in between cannot be missed
+        pendingRequest waiter = new pendingRequest(processNumber, resourceNumber, unitsRequested);
+        long stamp = lock.writeLock();
+        try {
+            if (tryGrant(waiter)) return CompletableFuture.completedFuture("Request successful");
+            park(waiter);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+        return waiter.result;
+    }
+
+    // Tries to grant each request parked on the queue of resourceNumber in order, moving those still not grantable
+    // onto the queues they now belong on
+    // Precondition: the write lock is held
+    // Postcondition: the requests granted are removed and added to granted, those completed by their callers are dropped
+    private void retryParked(int resourceNumber, List<pendingRequest> granted) {
+        for (Iterator<pendingRequest> it = waiting.get(resourceNumber).iterator(); it.hasNext(); ) {
+            pendingRequest waiter = it.next();
+            // A request granted from another queue is dropped from this one when reached
+            if (!waiter.granted && !waiter.result.isDone()) {
+                if (tryGrant(waiter)) granted.add(waiter);
+                else {
+                    park(waiter);
+                    if (blocking[resourceNumber]) continue;
+                }
+            }
+            it.remove();
+            waiter.queuedOn[resourceNumber] = false;
+        }
+    }
+
+    // Adds a request tryGrant could not grant to each queue it belongs on and is not on already
+    // Precondition: the write lock is held
+    private void park(pendingRequest waiter) {
+        for (int j = 0; j < numberOfResources; j++) {
+            if (blocking[j] && !waiter.queuedOn[j]) {
+                waiting.get(j).add(waiter);
+                waiter.queuedOn[j] = true;
+            }
+        }
+    }
+
+    // Grants a parked request if enough units are available and the resulting state is safe. Otherwise finds the
+    // resources a release of which could change that: its own resource if too few units are available, or every
+    // resource some process is short of once the state with the request granted is reduced as far as it goes
+    // Precondition: the write lock is held, the request is valid and within the maximum claim
+    // Postcondition: returns true if granted, otherwise blocking is true for exactly those resources
+    private boolean tryGrant(pendingRequest waiter) {
+        int process = waiter.processNumber, resource = waiter.resourceNumber, units = waiter.unitsRequested;
+        Arrays.fill(blocking, false);
+        // Checked first, so a request short of units costs no safety check
+        if (currentUnitsAvailable[resource] < units) {
+            blocking[resource] = true;
+            return false;
+        }
+
+        currentUnitsAvailable[resource] -= units;
+        currentAllocation[process][resource] += units;
+        Arrays.fill(reduced, false);
+        if (systemRepresentation.reduce(currentUnitsAvailable, currentAllocation, maxClaimsOfProcesses, reduced) == numberOfProcesses) {
+            grantVersion++;
+            waiter.granted = true;
+            return true;
+        }
+
+        // Units free once every reducible process is reduced
+        System.arraycopy(currentUnitsAvailable, 0, free, 0, numberOfResources);
+        for (int i = 0; i < numberOfProcesses; i++) {
+            if (!reduced[i]) continue;
+            for (int j = 0; j < numberOfResources; j++) free[j] += currentAllocation[i][j];
+        }
+        for (int i = 0; i < numberOfProcesses; i++) {
+            if (reduced[i]) continue;
+            for (int j = 0; j < numberOfResources; j++) {
+                if (maxClaimsOfProcesses[i][j] - currentAllocation[i][j] > free[j]) blocking[j] = true;
+            }
+        }
+        currentUnitsAvailable[resource] += units;
+        currentAllocation[process][resource] -= units;
+        return false;
+    }
+
+    // Copies the current state into available and allocation
+    // Tries an optimistic read first, which blocks no one, and falls back to a read lock if a write interfered
+    // Postcondition: available and allocation hold a consistent state, returns the grant version of that state
+    private long snapshot(int[] available, int[][] allocation) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long version = copyState(available, allocation);
+            if (lock.validate(stamp)) return version;
+        }
+        stamp = lock.readLock();
+        try {
+            return copyState(available, allocation);
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long copyState(int[] available, int[][] allocation) {
+        long version = grantVersion;
+        System.arraycopy(currentUnitsAvailable, 0, available, 0, numberOfResources);
+        for (int i = 0; i < numberOfProcesses; i++) {
+            System.arraycopy(currentAllocation[i], 0, allocation[i], 0, numberOfResources);
+        }
+        return version;
+    }
+
+    // Postcondition: returns a copy of the units currently available of each resource
+    public int[] available() {
+        long stamp = lock.readLock();
+        try {
+            return currentUnitsAvailable.clone();
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Postcondition: returns the number of times a request had to check again because another was granted first
+    public long retries() {
+        return retries.get();
+    }
+
+    // Checks, on a consistent view of the state, that no allocation is negative or above its maximum claim, that
+    // every unit is either available or allocated, and that the state is safe
+    // Precondition: totalUnits holds the number of units of each resource the system was created with
+    // Postcondition: returns true if every invariant holds
+    public boolean checkInvariants(int[] totalUnits) {
+        long stamp = lock.readLock();
+        try {
+            for (int j = 0; j < numberOfResources; j++) {
+                int units = currentUnitsAvailable[j];
+                if (units < 0) return false;
+                for (int i = 0; i < numberOfProcesses; i++) {
+                    if (currentAllocation[i][j] < 0 || currentAllocation[i][j] > maxClaimsOfProcesses[i][j]) return false;
+                    units += currentAllocation[i][j];
+                }
+                if (units != totalUnits[j]) return false;
+            }
+            return systemRepresentation.isSafeStateWorklist(currentUnitsAvailable, currentAllocation, maxClaimsOfProcesses);
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
 }
 
 // SAMPLE RUNS
@@ -364,6 +1177,7 @@ Resource #1:
 System representation created, you may begin making requests or releases.
 To make a request, type request(i,j,k)
 To make a release, type release(i,j,k)
+To request units of every resource at once, type requestall(i,k0,k1,...) with a k for each resource
 i = a process number, j = a resource number, k = # of units of resource j requested or released.
 Type exit to end program
 request(0,1,1)
@@ -371,9 +1185,9 @@ Request successful
 request(2,1,2)
 Request successful
 request(1,0,1)
-Request denied: Unsafe state ** Deadlock detected in unsafe version **
+Request denied: Unsafe state ** Deadlock detected in unsafe version among processes [0, 1, 2] **
 request(0,0,1)
-Request successful ** Deadlock detected in unsafe version **
+Request successful ** Deadlock detected in unsafe version among processes [0, 1, 2] **
 release(0,0,1)
 Release successful.
 release(0,1,1)
@@ -429,6 +1243,7 @@ Resource #2:
 System representation created, you may begin making requests or releases.
 To make a request, type request(i,j,k)
 To make a release, type release(i,j,k)
+To request units of every resource at once, type requestall(i,k0,k1,...) with a k for each resource
 i = a process number, j = a resource number, k = # of units of resource j requested or released.
 Type exit to end program
 request(1,2,1)
@@ -436,7 +1251,7 @@ Request successful
 request(2,0,1)
 Request successful
 request(0,1,1)
-Request denied: Unsafe state ** Deadlock detected in unsafe version **
+Request denied: Unsafe state ** Deadlock detected in unsafe version among processes [0, 2] **
 request(2,1,1)
 Request successful
 exit
@@ -465,6 +1280,7 @@ Resource #0:
 System representation created, you may begin making requests or releases.
 To make a request, type request(i,j,k)
 To make a release, type release(i,j,k)
+To request units of every resource at once, type requestall(i,k0,k1,...) with a k for each resource
 i = a process number, j = a resource number, k = # of units of resource j requested or released.
 Type exit to end program
 request(0,0,1)
@@ -481,6 +1297,10 @@ request(1,2,3)
 Request failed: Invalid process or resource number
 release(4,5,6)
 Release failed: Invalid process or resource number
+requestall(0,1)
+Request successful
+requestall(0,1,1)
+Request failed: Invalid process or resource number
 banana
 Invalid entry
 exit
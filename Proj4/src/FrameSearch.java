@@ -0,0 +1,39 @@
+/*
+Project 4:      Performance of Page Replacement Algorithms
+Description:    Frame search interface shared by JustinHenleyCSCI331Proj4 and VectorFrameSearch, in its own
+                file so VectorFrameSearch can be compiled against it
+Author:         Justin Henley, jahenley@mail.fhsu.edu
+Date:           2026-10-17
+ */
+
+/**
+ * Finds a page among the frames of memory by scanning them
+ * VectorFrameSearch, kept in its own file as it needs the incubating Vector API, compares many
+ * frames at once; ScalarFrameSearch compares one at a time and is always available
+ * Only ScanningFIFOPolicy, timed by the bench-search command, searches frames this way; the
+ * replacement algorithms themselves find pages through PageIndex
+ */
+interface FrameSearch {
+    /**
+     * @param frames The page held by each frame
+     * @param count The number of frames to search, from the start of frames
+     * @param page The page to be found
+     * @return The index of the first frame holding page, or -1 if none does
+     */
+    int indexOf(int[] frames, int count, int page);
+
+    /**
+     * Loads VectorFrameSearch if it was compiled and jdk.incubator.vector is present, which needs
+     * javac and java both given --add-modules jdk.incubator.vector
+     *
+     * @return The vector search, or null if it cannot be loaded
+     */
+    static FrameSearch vector() {
+        try {
+            return (FrameSearch) Class.forName("VectorFrameSearch").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
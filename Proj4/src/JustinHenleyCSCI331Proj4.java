@@ -1,15 +1,105 @@
 /*
 Project 4:      Performance of Page Replacement Algorithms
-Description:    Compares the performance of page replacement algorithms for fixed numbers of frames: Optimal, FIFO, LRU, Second Chance
+Description:    Compares the performance of page replacement algorithms for fixed numbers of frames: Optimal, LRU, Second Chance,
+                Enhanced Second Chance, FIFO, ARC, 2Q, CLOCK-Pro, LFU
 Author:         Justin Henley, jahenley@mail.fhsu.edu
 Date:           2021-05-06
  */
 
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
 
 public class JustinHenleyCSCI331Proj4 {
+    // Number of references the streaming algorithms read at a time
+    static final int BLOCK_SIZE = 4096;
+    // Approximate number of references in each independently generated segment of a reference string
+    private static final int SEGMENT_LENGTH = 1 << 16;
+    // Seed of the reference strings used by benchmarks, so every benchmark run sees the same strings
+    private static final long BENCHMARK_SEED = 331;
+    // Untimed and timed repetitions of each benchmark
+    private static final int WARMUP_ITERATIONS = 3, MEASURED_ITERATIONS = 5;
+    // Receives benchmark results so the JIT cannot discard the work that produced them
+    private static volatile long benchmarkSink;
+
+    /**
+     * The page replacement algorithms that can be compared on a reference string
+     */
+    enum Algorithm {
+        OPTIMAL("Optimal", null), LRU("LRU", LRUPolicy::new), SECOND_CHANCE("2nd Chance", SecondChancePolicy::new),
+        ENHANCED_SECOND_CHANCE("Enh 2nd Ch", EnhancedSecondChancePolicy::new), FIFO("FIFO", FIFOPolicy::new),
+        ARC("ARC", ARCPolicy::new), TWO_Q("2Q", TwoQueuePolicy::new), CLOCK_PRO("CLOCK-Pro", ClockProPolicy::new),
+        LFU("LFU", LFUPolicy::new);
+
+        final String label;  // Name shown in results
+        private final IntFunction<ReplacementPolicy> policy;  // Creates the memory of a streaming algorithm, or null
+
+        Algorithm(String label, IntFunction<ReplacementPolicy> policy) {
+            this.label = label;
+            this.policy = policy;
+        }
+
+        /**
+         * Applies the algorithm to a reference string
+         *
+         * @param rs The reference string to with the algorithm is applied
+         * @param numOfFrames The number of frames in memory
+         * @return The number of page faults generated by the algorithm
+         */
+        int faults(ReferenceString rs, int numOfFrames) {
+            switch (this) {
+                case OPTIMAL: return NextUseOptimalReplacement(rs, numOfFrames);
+                case LRU: return LinkedLRUReplacement(rs, numOfFrames);
+                case SECOND_CHANCE: return SecondChanceReplacement(rs, numOfFrames);
+                case ENHANCED_SECOND_CHANCE: return EnhancedSecondChanceReplacement(rs, numOfFrames);
+                case FIFO: return FIFOReplacement(rs, numOfFrames);
+                case ARC: return ARCReplacement(rs, numOfFrames);
+                case TWO_Q: return TwoQueueReplacement(rs, numOfFrames);
+                case CLOCK_PRO: return ClockProReplacement(rs, numOfFrames);
+                default: return LFUReplacement(rs, numOfFrames);
+            }
+        }
+
+        /**
+         * @return Whether the algorithm can be fed one reference at a time, which all but OPTIMAL can,
+         *         as it needs the whole reference string
+         */
+        boolean isStreaming() {
+            return policy != null;
+        }
+
+        /**
+         * Creates an empty memory managed by the algorithm, to be fed one reference at a time
+         * Only streaming algorithms have one, see isStreaming
+         *
+         * @param numOfFrames The number of frames in memory
+         * @return The memory
+         */
+        ReplacementPolicy policy(int numOfFrames) {
+            return policy.apply(numOfFrames);
+        }
+
+        /**
+         * @return Every streaming algorithm, that is all but OPTIMAL
+         */
+        static Algorithm[] online() {
+            return Arrays.stream(values()).filter(Algorithm::isStreaming).toArray(Algorithm[]::new);
+        }
+    }
 
     public static void main(String[] args) {
+        // Run a command given on the command line instead of running interactively
+        if (args.length > 0) {
+            runCommand(args);
+            return;
+        }
+
         Scanner input = new Scanner(System.in);
 
         int sizeOfVM, lengthOfRS, sizeOfLocus, rateOfMotion, numOfFrames;
@@ -32,14 +122,17 @@ public class JustinHenleyCSCI331Proj4 {
             numOfFrames = input.nextInt();
 
             // Create the new reference string
-            ArrayList<Integer> rs = createRS(sizeOfVM, lengthOfRS, sizeOfLocus, rateOfMotion, prob);
-
-            // Report results
-            int fifo = FIFOReplacement(rs, numOfFrames);
-            int lru = LRUReplacement(rs, numOfFrames);
-            int optimal = OptimalReplacement(rs, numOfFrames);
-            int secondChance = SecondChanceReplacement(rs, numOfFrames);
-            displayResults(optimal, lru, secondChance, fifo);
+            ReferenceString rs = createRS(sizeOfVM, lengthOfRS, sizeOfLocus, rateOfMotion, prob);
+
+            // Report results, the online algorithms share one pass over the reference string
+            int[] faults = new int[Algorithm.values().length];
+            faults[Algorithm.OPTIMAL.ordinal()] = Algorithm.OPTIMAL.faults(rs, numOfFrames);
+            Algorithm[] online = Algorithm.online();
+            long[] onlineFaults = simulate(rs.stream(), numOfFrames, online);
+            for (int a = 0; a < online.length; a++) {
+                faults[online[a].ordinal()] = (int) onlineFaults[a];
+            }
+            displayResults(faults);
 
             // Prompt for continuation
             System.out.println("Do you want to run another test? Y/N");
@@ -49,65 +142,523 @@ public class JustinHenleyCSCI331Proj4 {
         } while(choice == 'Y');
     }
 
+    /**
+     * Runs a non-interactive command
+     *   bench-lru                                                        times the LRU implementations
+     *   bench-search [frames]                                            benchmarks FIFO finding pages by scalar scan,
+     *                                                                    vector scan and hash index at each of the
+     *                                                                    comma-separated numbers of frames
+     *   bench [lengths [loci [rates [frames]]]]                          benchmarks createRS and every algorithm over
+     *                                                                    each combination of the comma-separated values
+     *   curve sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob maxFrames prints LRU faults for 1..maxFrames as CSV
+     *   sweep sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob minFrames maxFrames [algorithm,...]
+     *                                                                    prints faults of each algorithm at each
+     *                                                                    number of frames as CSV, computed in parallel
+     *   variable sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob windows thresholds
+     *                                                                    prints faults and average resident set size of
+     *                                                                    Working Set at each comma-separated window and of
+     *                                                                    PFF at each comma-separated threshold, as CSV
+     *   multi processes sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob quantum numOfFrames [seed]
+     *                                                                    compares global and local LRU on the interleaved
+     *                                                                    references of many processes, see MultiProcessWorkload
+     *                                                                    sizeOfLocus, rateOfMotion, prob and quantum are each
+     *                                                                    a value or a range min,max drawn from per process
+     *   metrics sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob numOfFrames window [algorithm,...]
+     *                                                                    prints the faults in each window of references,
+     *                                                                    evictions by reuse distance and nanoseconds per
+     *                                                                    reference of each online algorithm as CSV
+     *   belady sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob maxFrames candidates [seed]
+     *                                                                    prints every generated reference string, by its
+     *                                                                    createRS seed, where FIFO faults more with one more
+     *                                                                    frame, see searchBeladyAnomalies
+     *   writes sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob writeProb numOfFrames [seed]
+     *                                                                    prints the faults and write-backs of dirty pages
+     *                                                                    of each online algorithm when each reference is
+     *                                                                    a write with probability writeProb, as CSV
+     *   write-trace file sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob
+     *                                                                    writes a generated reference string to a trace file
+     *   trace file numOfFrames                                           prints the faults of each algorithm on a trace file,
+     *                                                                    streaming it once for all but Optimal
+     *   batch [--format csv|json] [--seed n] (--jobs file | sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob numOfFrames ...)
+     *                                                                    runs many test runs, see runBatch
+     *
+     * @param args The command name followed by its arguments
+     */
+    private static void runCommand(String[] args) {
+        try {
+            dispatchCommand(args);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Invalid argument(s): " + e.getMessage());
+        }
+    }
+
+    // Runs the command named by args[0], see runCommand
+    private static void dispatchCommand(String[] args) {
+        if (args[0].equals("bench-lru")) {
+            benchmarkLRU();
+        }
+        else if (args[0].equals("bench-search") && args.length <= 2) {
+            benchmarkFrameSearch(parseList(args.length == 2 ? args[1] : "4,8,16,32,64,128,256,1024"));
+        }
+        else if (args[0].equals("bench") && args.length <= 5) {
+            String[] lists = {"100000,1000000", "20,1000", "50,1000", "10,100,1000"};
+            System.arraycopy(args, 1, lists, 0, args.length - 1);
+            benchmarkAll(parseList(lists[0]), parseList(lists[1]), parseList(lists[2]), parseList(lists[3]));
+        }
+        else if (args[0].equals("curve") && args.length == 7) {
+            ReferenceString rs = createRS(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]), Double.parseDouble(args[5]));
+            int[] faults = LRUFaultCurve(rs, Integer.parseInt(args[6]));
+            System.out.println("frames,faults");
+            for (int f = 1; f < faults.length; f++) {
+                System.out.println(f + "," + faults[f]);
+            }
+        }
+        else if (args[0].equals("sweep") && (args.length == 8 || args.length == 9)) {
+            ReferenceString rs = createRS(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]), Double.parseDouble(args[5]));
+            int minFrames = Integer.parseInt(args[6]), maxFrames = Integer.parseInt(args[7]);
+            Algorithm[] algorithms = args.length == 9 ? parseAlgorithms(args[8]) : Algorithm.values();
+
+            long start = System.nanoTime();
+            int[][] faults = sweep(rs, algorithms, minFrames, maxFrames, Runtime.getRuntime().availableProcessors());
+            System.err.printf("Sweep took %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+            StringBuilder header = new StringBuilder("frames");
+            for (Algorithm algorithm : algorithms) header.append(',').append(algorithm.label);
+            System.out.println(header);
+            for (int f = minFrames; f <= maxFrames; f++) {
+                StringBuilder row = new StringBuilder().append(f);
+                for (int a = 0; a < algorithms.length; a++) row.append(',').append(faults[a][f - minFrames]);
+                System.out.println(row);
+            }
+        }
+        else if (args[0].equals("variable") && args.length == 8) {
+            ReferenceString rs = createRS(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]), Double.parseDouble(args[5]));
+            System.out.println("algorithm,parameter,faults,averageResidentSize");
+            for (int window : parseList(args[6])) {
+                VariableMemory memory = simulate(rs.stream(), new WorkingSetMemory(window));
+                System.out.printf("Working Set,%d,%d,%.2f%n", window, memory.faults(), memory.averageResidentSize());
+            }
+            for (int threshold : parseList(args[7])) {
+                VariableMemory memory = simulate(rs.stream(), new PageFaultFrequencyMemory(threshold));
+                System.out.printf("PFF,%d,%d,%.2f%n", threshold, memory.faults(), memory.averageResidentSize());
+            }
+        }
+        else if (args[0].equals("multi") && (args.length == 9 || args.length == 10)) {
+            MultiProcessWorkload workload = new MultiProcessWorkload(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    parseRange(args[4]), parseRange(args[5]), parseDoubleRange(args[6]), parseRange(args[7]),
+                    args.length == 10 ? Long.parseLong(args[9]) : new SplittableRandom().nextLong());
+            compareGlobalLocal(workload, workload.generate(Integer.parseInt(args[3])), Integer.parseInt(args[8]));
+        }
+        else if (args[0].equals("metrics") && (args.length == 8 || args.length == 9)) {
+            ReferenceString rs = createRS(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]), Double.parseDouble(args[5]));
+            int numOfFrames = Integer.parseInt(args[6]), window = Integer.parseInt(args[7]);
+            Algorithm[] algorithms = args.length == 9 ? parseAlgorithms(args[8]) : Algorithm.online();
+
+            // Only the policies being measured are wrapped, the rest of the simulator is unaffected
+            InstrumentedPolicy[] memories = new InstrumentedPolicy[algorithms.length];
+            for (int a = 0; a < algorithms.length; a++) {
+                if (!algorithms[a].isStreaming())
+                    throw new IllegalArgumentException(algorithms[a].label + " cannot be instrumented");
+                memories[a] = new InstrumentedPolicy(algorithms[a].policy(numOfFrames), window);
+            }
+            simulate(rs.stream(), memories);
+
+            System.out.println(InstrumentedPolicy.CSV_HEADER);
+            for (int a = 0; a < algorithms.length; a++) memories[a].writeCSV(algorithms[a].label, System.out);
+        }
+        else if (args[0].equals("belady") && (args.length == 8 || args.length == 9)) {
+            long seed = args.length == 9 ? Long.parseLong(args[8]) : new SplittableRandom().nextLong();
+            long numOfCandidates = Long.parseLong(args[7]);
+            long start = System.nanoTime();
+            List<long[]> cases = searchBeladyAnomalies(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]), Double.parseDouble(args[5]),
+                    Integer.parseInt(args[6]), numOfCandidates, seed);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("Screened %d reference strings in %.1f s (%.0f per minute)%n",
+                    numOfCandidates, seconds, numOfCandidates / seconds * 60);
+
+            System.out.println("seed,frames,faults,faultsWithOneMoreFrame");
+            for (long[] found : cases) {
+                System.out.println((seed + found[0]) + "," + found[1] + "," + found[2] + "," + found[3]);
+            }
+        }
+        else if (args[0].equals("writes") && (args.length == 8 || args.length == 9)) {
+            long seed = args.length == 9 ? Long.parseLong(args[8]) : new SplittableRandom().nextLong();
+            double writeProb = Double.parseDouble(args[6]);
+            if (writeProb < 0 || writeProb > 1) throw new IllegalArgumentException("write probability must be from 0 to 1");
+            ReferenceString rs = createRS(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]), Double.parseDouble(args[5]), seed)
+                    .withWrites(writeProb, ~seed);
+            Algorithm[] online = Algorithm.online();
+            long[][] results = simulateWrites(rs, Integer.parseInt(args[7]), online);
+
+            System.out.println("algorithm,faults,writeBacks,pageTransfers");
+            for (int a = 0; a < online.length; a++) {
+                System.out.println(online[a].label + "," + results[0][a] + "," + results[1][a] + ","
+                        + (results[0][a] + results[1][a]));
+            }
+        }
+        else if (args[0].equals("write-trace") && args.length == 7) {
+            ReferenceString rs = createRS(Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                    Integer.parseInt(args[4]), Integer.parseInt(args[5]), Double.parseDouble(args[6]));
+            try {
+                TraceFile.write(Paths.get(args[1]), rs.stream());
+            }
+            catch (IOException e) {
+                System.out.println("Could not write trace: " + e.getMessage());
+            }
+        }
+        else if (args[0].equals("trace") && args.length == 3) {
+            int numOfFrames = Integer.parseInt(args[2]);
+            try (TraceFile trace = TraceFile.open(Paths.get(args[1]))) {
+                // Optimal makes its own passes, the online algorithms share a single pass over the trace
+                System.out.println("\n*** Page Faults Generated *** ");
+                System.out.printf("%10s: %d%n", Algorithm.OPTIMAL.label, NextUseOptimalReplacement(trace, numOfFrames));
+                Algorithm[] online = Algorithm.online();
+                long[] faults = simulate(trace.stream(), numOfFrames, online);
+                for (int a = 0; a < online.length; a++) {
+                    System.out.printf("%10s: %d%n", online[a].label, faults[a]);
+                }
+            }
+            catch (IOException e) {
+                System.out.println("Could not read trace: " + e.getMessage());
+            }
+            catch (UncheckedIOException e) {
+                System.out.println("Could not read trace: " + e.getCause().getMessage());
+            }
+        }
+        else if (args[0].equals("batch") && args.length > 1) {
+            try {
+                runBatch(Arrays.copyOfRange(args, 1, args.length), System.out);
+            }
+            catch (IOException e) {
+                System.out.println("Could not read job file: " + e.getMessage());
+            }
+        }
+        else {
+            System.out.println("Usage: bench-lru | bench-search [frames] | bench [lengths [loci [rates [frames]]]]");
+            System.out.println("       | curve sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob maxFrames");
+            System.out.println("       | sweep sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob minFrames maxFrames [algorithm,...]");
+            System.out.println("       | variable sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob windows thresholds");
+            System.out.println("       | multi processes sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob quantum numOfFrames [seed]");
+            System.out.println("       | metrics sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob numOfFrames window [algorithm,...]");
+            System.out.println("       | belady sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob maxFrames candidates [seed]");
+            System.out.println("       | writes sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob writeProb numOfFrames [seed]");
+            System.out.println("       | write-trace file sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob | trace file numOfFrames");
+            System.out.println("       | batch [--format csv|json] [--seed n] (--jobs file | sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob numOfFrames ...)");
+        }
+    }
+
+    /**
+     * The specifications of one test run, as prompted for by the interactive session
+     */
+    static final class TestRun {
+        final int sizeOfVM, lengthOfRS, sizeOfLocus, rateOfMotion, numOfFrames;
+        final double prob;
+
+        /**
+         * Parses a test run from six values in the order they are prompted for:
+         * sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob numOfFrames
+         *
+         * @param values The values to parse
+         * @param from The index of the first value
+         * @throws NumberFormatException If a value is not a number
+         * @throws IllegalArgumentException If a value is out of range
+         */
+        TestRun(String[] values, int from) {
+            sizeOfVM = Integer.parseInt(values[from]);
+            lengthOfRS = Integer.parseInt(values[from + 1]);
+            sizeOfLocus = Integer.parseInt(values[from + 2]);
+            rateOfMotion = Integer.parseInt(values[from + 3]);
+            prob = Double.parseDouble(values[from + 4]);
+            numOfFrames = Integer.parseInt(values[from + 5]);
+            if (sizeOfVM <= 0 || lengthOfRS < 0 || sizeOfLocus <= 0 || rateOfMotion <= 0 || numOfFrames <= 0)
+                throw new IllegalArgumentException("sizes, rate of motion and number of frames must be positive");
+        }
+    }
+
+    /**
+     * Runs many test runs back to back and prints the faults and elapsed nanoseconds of each
+     * algorithm on each run, as CSV (the default) or as a JSON array
+     * Arguments are an optional --format csv|json, an optional --seed n that makes every run generate
+     * its reference string from the same seed so results are reproducible, then either --jobs file, naming a file with one
+     * test run per line, or groups of six values, one group per test run. Each test run is the values
+     * sizeOfVM lengthOfRS sizeOfLocus rateOfMotion prob numOfFrames. Blank lines and lines starting
+     * with # in a job file are ignored
+     *
+     * @param args The arguments following the batch command
+     * @param out The stream to print results to
+     * @throws IOException If the job file cannot be read
+     * @throws IllegalArgumentException If the arguments or a job are not valid
+     */
+    private static void runBatch(String[] args, PrintStream out) throws IOException {
+        boolean json = false;
+        int next = 0;
+        if (args.length >= 2 && args[0].equals("--format")) {
+            if (!args[1].equals("csv") && !args[1].equals("json"))
+                throw new IllegalArgumentException("unknown format " + args[1]);
+            json = args[1].equals("json");
+            next = 2;
+        }
+        Long seed = null;
+        if (args.length >= next + 2 && args[next].equals("--seed")) {
+            seed = Long.parseLong(args[next + 1]);
+            next += 2;
+        }
+
+        // Read every test run before starting, so a bad job fails fast
+        List<TestRun> runs = new ArrayList<>();
+        if (args.length - next == 2 && args[next].equals("--jobs")) {
+            for (String line : Files.readAllLines(Paths.get(args[next + 1]))) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] values = line.split("[\\s,]+");
+                if (values.length != 6)
+                    throw new IllegalArgumentException("job needs 6 values: " + line);
+                runs.add(new TestRun(values, 0));
+            }
+        }
+        else {
+            if (args.length == next || (args.length - next) % 6 != 0)
+                throw new IllegalArgumentException("test runs need 6 values each");
+            for (int i = next; i < args.length; i += 6) runs.add(new TestRun(args, i));
+        }
+
+        if (json) out.println("[");
+        else out.println("sizeOfVM,lengthOfRS,sizeOfLocus,rateOfMotion,prob,numOfFrames,algorithm,faults,nanos");
+
+        for (int r = 0; r < runs.size(); r++) {
+            TestRun run = runs.get(r);
+            ReferenceString rs = seed == null
+                    ? createRS(run.sizeOfVM, run.lengthOfRS, run.sizeOfLocus, run.rateOfMotion, run.prob)
+                    : createRS(run.sizeOfVM, run.lengthOfRS, run.sizeOfLocus, run.rateOfMotion, run.prob, seed);
+            String spec = json
+                    ? String.format("\"sizeOfVM\": %d, \"lengthOfRS\": %d, \"sizeOfLocus\": %d, \"rateOfMotion\": %d, \"prob\": %s, \"numOfFrames\": %d",
+                            run.sizeOfVM, run.lengthOfRS, run.sizeOfLocus, run.rateOfMotion, run.prob, run.numOfFrames)
+                    : String.format("%d,%d,%d,%d,%s,%d",
+                            run.sizeOfVM, run.lengthOfRS, run.sizeOfLocus, run.rateOfMotion, run.prob, run.numOfFrames);
+
+            if (json) out.print("  {" + spec + ", \"results\": [");
+            Algorithm[] algorithms = Algorithm.values();
+            for (int a = 0; a < algorithms.length; a++) {
+                long start = System.nanoTime();
+                int faults = algorithms[a].faults(rs, run.numOfFrames);
+                long nanos = System.nanoTime() - start;
+
+                if (json)
+                    out.printf("%s{\"algorithm\": \"%s\", \"faults\": %d, \"nanos\": %d}",
+                            a == 0 ? "" : ", ", algorithms[a].label, faults, nanos);
+                else
+                    out.println(spec + "," + algorithms[a].label + "," + faults + "," + nanos);
+            }
+            if (json) out.println("]}" + (r < runs.size() - 1 ? "," : ""));
+            out.flush();
+        }
+        if (json) out.println("]");
+    }
+
+    /**
+     * Creates a reference string built to the given specifications from a random seed
+     *
+     * @param sizeOfVM Size of the virtual memory
+     * @param length Length of the reference string to generate
+     * @param sizeOfLocus Size of the locus
+     * @param rateOfMotion Rate of Motion
+     * @param prob Probability of a transition to a new location
+     * @return The reference string, rounded up to a whole number of rateOfMotion references
+     */
+    private static ReferenceString createRS(int sizeOfVM, int length, int sizeOfLocus, int rateOfMotion, double prob) {
+        return createRS(sizeOfVM, length, sizeOfLocus, rateOfMotion, prob, new SplittableRandom().nextLong());
+    }
+
     /**
      * Creates a reference string built to the given specifications
+     * The string is generated as segments of whole bursts of rateOfMotion references. Each segment has
+     * two generators split in order from one seeded with seed: one decides the transitions after each
+     * burst and the other draws the pages within each burst. The transitions are cheap to draw, so they
+     * are first followed in order to find the locus each segment starts at, then the segments are filled
+     * in parallel. The string follows the same model as one generated in a single pass, and segment
+     * boundaries do not depend on the number of threads, so the same seed always gives the same string
      *
      * @param sizeOfVM Size of the virtual memory
      * @param length Length of the reference string to generate
      * @param sizeOfLocus Size of the locus
      * @param rateOfMotion Rate of Motion
      * @param prob Probability of a transition to a new location
-     * @return An ArrayList of integers representing the reference string
+     * @param seed The seed of the random number generator
+     * @return The reference string, rounded up to a whole number of rateOfMotion references
      */
-    private static ArrayList<Integer> createRS(int sizeOfVM, int length, int sizeOfLocus, int rateOfMotion, double prob) {
-        // Create a new array list to store the reference string (RS)
-        ArrayList<Integer> result = new ArrayList<>();
-        int start = 0;
-        int n;  // A page number in a reference string, declared out here for persistence across while iterations
+    private static ReferenceString createRS(int sizeOfVM, int length, int sizeOfLocus, int rateOfMotion, double prob, long seed) {
+        // References are generated rateOfMotion at a time until the desired size is reached
+        int[] result = new int[Math.toIntExact(((long) length + rateOfMotion - 1) / rateOfMotion * rateOfMotion)];
+        int burstsPerSegment = Math.max(1, SEGMENT_LENGTH / rateOfMotion);
+        int segmentLength = burstsPerSegment * rateOfMotion;
+        int numOfSegments = (result.length + segmentLength - 1) / segmentLength;
+
+        // Split every segment's generators up front, in order, so each depends only on seed and its index
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] pages = new SplittableRandom[numOfSegments];
+        long[] transitionSeeds = new long[numOfSegments];
+        for (int i = 0; i < numOfSegments; i++) {
+            pages[i] = root.split();
+            transitionSeeds[i] = root.nextLong();
+        }
+
+        // Follow the transitions alone to find where each segment's first locus starts
+        int[] starts = new int[numOfSegments];
+        for (int segment = 0, start = 0; segment < numOfSegments; segment++) {
+            starts[segment] = start;
+            SplittableRandom transitions = new SplittableRandom(transitionSeeds[segment]);
+            int bursts = (Math.min(result.length, (segment + 1) * segmentLength) - segment * segmentLength) / rateOfMotion;
+            for (int burst = 0; burst < bursts; burst++) start = moveLocus(start, transitions, sizeOfVM, prob);
+        }
+
+        java.util.stream.IntStream.range(0, numOfSegments).parallel().forEach(segment -> {
+            int from = segment * segmentLength;
+            fillSegment(result, from, Math.min(result.length, from + segmentLength), starts[segment], pages[segment],
+                    new SplittableRandom(transitionSeeds[segment]), sizeOfVM, sizeOfLocus, rateOfMotion, prob);
+        });
+        return new ReferenceString(result);
+    }
 
-        // Repeat until desired size is reached
-        while(result.size() < length) {
+    /**
+     * Fills part of a reference string, rateOfMotion references at a time, see createRS
+     *
+     * @param result The reference string
+     * @param from The first position to fill
+     * @param end The position after the last to fill, from plus a multiple of rateOfMotion
+     * @param start The start of the first locus
+     * @param pages The source of the pages referenced within each locus
+     * @param transitions The source of the moves of the locus after each burst
+     */
+    private static void fillSegment(int[] result, int from, int end, int start, SplittableRandom pages,
+                                    SplittableRandom transitions, int sizeOfVM, int sizeOfLocus, int rateOfMotion,
+                                    double prob) {
+        int size = from;
+        // Repeat until the segment is full
+        while (size < end) {
             // Add size of locus random number in it
             for (int i = 0; i < rateOfMotion; i++) {
-                n = (int) (Math.random() * sizeOfLocus + start);
-                result.add(n);
+                result[size++] = (int) (pages.nextDouble() * sizeOfLocus + start);
             }
-            // Generate a random number between 0 and 1 to decide whether to transition
-            if (Math.random() < prob)
-                start = (int) (Math.random() * sizeOfVM);
-            else
-                start = (start + 1) % sizeOfVM;
+            start = moveLocus(start, transitions, sizeOfVM, prob);
         }
-        return result;
+    }
+
+    /**
+     * Moves the locus after a burst of references
+     *
+     * @param start The start of the current locus
+     * @param transitions The source of the move
+     * @return The start of the next locus, a random location with probability prob, otherwise the next page
+     */
+    private static int moveLocus(int start, SplittableRandom transitions, int sizeOfVM, double prob) {
+        // Generate a random number between 0 and 1 to decide whether to transition
+        if (transitions.nextDouble() < prob)
+            return transitions.nextInt(sizeOfVM);
+        else
+            return (start + 1) % sizeOfVM;
+    }
+
+    /**
+     * Searches reference strings for Belady's anomaly, where FIFO generates more page faults when
+     * given one more frame
+     * Candidate i is the reference string createRS(sizeOfVM, length, sizeOfLocus, rateOfMotion, prob, seed + i),
+     * so any case found can be replayed. Candidates are screened in parallel, and each is read once
+     * while FIFO runs at every number of frames from 1 to maxFrames in lockstep, each memory kept as
+     * a ring of frames plus a bitset of the pages it holds
+     *
+     * @param maxFrames The largest number of frames to try
+     * @param numOfCandidates The number of reference strings to screen
+     * @param seed The seed of the first candidate
+     * @return Each case found as {candidate, frames, faults with frames, faults with frames + 1}, in candidate order
+     * @throws IllegalArgumentException If a parameter is out of range, or length is longer than one segment of createRS
+     */
+    private static List<long[]> searchBeladyAnomalies(int sizeOfVM, int length, int sizeOfLocus, int rateOfMotion,
+                                                      double prob, int maxFrames, long numOfCandidates, long seed) {
+        if (sizeOfVM <= 0 || length <= 0 || sizeOfLocus <= 0 || rateOfMotion <= 0 || maxFrames < 2 || numOfCandidates < 0)
+            throw new IllegalArgumentException("sizes and rate of motion must be positive, and at least 2 frames tried");
+        // Longer strings would be generated in several segments, which fillSegment alone does not reproduce
+        int segmentLength = Math.max(1, SEGMENT_LENGTH / rateOfMotion) * rateOfMotion;
+        int roundedLength = (int) (((long) length + rateOfMotion - 1) / rateOfMotion * rateOfMotion);
+        if (roundedLength > segmentLength)
+            throw new IllegalArgumentException("length must be at most " + segmentLength);
+        int words = (sizeOfVM + sizeOfLocus + 63) >>> 6;  // Every page is below sizeOfVM + sizeOfLocus
+
+        // Each chunk of candidates reuses its own buffers
+        int chunkSize = 1024;
+        int numOfChunks = Math.toIntExact((numOfCandidates + chunkSize - 1) / chunkSize);
+        List<List<long[]>> found = java.util.stream.IntStream.range(0, numOfChunks).parallel().mapToObj(chunk -> {
+            List<long[]> cases = new ArrayList<>();
+            int[] rs = new int[roundedLength];
+            long[] resident = new long[(maxFrames + 1) * words];     // Bitset of the pages held with f frames
+            int[] frames = new int[maxFrames * (maxFrames + 1) / 2]; // Ring of frames for f frames, from (f - 1) * f / 2
+            int[] oldest = new int[maxFrames + 1];
+            long[] faults = new long[maxFrames + 1];
+
+            long end = Math.min(numOfCandidates, (long) (chunk + 1) * chunkSize);
+            for (long candidate = (long) chunk * chunkSize; candidate < end; candidate++) {
+                SplittableRandom root = new SplittableRandom(seed + candidate);
+                SplittableRandom pages = root.split();
+                fillSegment(rs, 0, roundedLength, 0, pages, new SplittableRandom(root.nextLong()),
+                        sizeOfVM, sizeOfLocus, rateOfMotion, prob);
+                Arrays.fill(resident, 0);
+                Arrays.fill(oldest, 0);
+                Arrays.fill(faults, 0);
+
+                for (int page : rs) {
+                    int word = page >>> 6;
+                    long bit = 1L << page;
+                    for (int f = 1, base = 0; f <= maxFrames; base += f, f++) {
+                        if ((resident[f * words + word] & bit) != 0) continue;
+
+                        // Page fault, the first f faults fill empty frames and later ones replace the oldest
+                        if (faults[f] >= f) {
+                            int evicted = frames[base + oldest[f]];
+                            resident[f * words + (evicted >>> 6)] &= ~(1L << evicted);
+                        }
+                        frames[base + oldest[f]] = page;
+                        resident[f * words + word] |= bit;
+                        oldest[f] = oldest[f] + 1 == f ? 0 : oldest[f] + 1;
+                        faults[f]++;
+                    }
+                }
+
+                for (int f = 1; f < maxFrames; f++) {
+                    if (faults[f + 1] > faults[f]) cases.add(new long[] {candidate, f, faults[f], faults[f + 1]});
+                }
+            }
+            return cases;
+        }).collect(java.util.stream.Collectors.toList());
+
+        List<long[]> cases = new ArrayList<>();
+        for (List<long[]> chunkCases : found) cases.addAll(chunkCases);
+        return cases;
     }
 
     /**
      * Reports the number of page replacements after applying the FIFO
      * replacement algorithm to the given reference string
-     * @param rs The reference string to with the algorithm is applied
+     * @param rs The references to which the algorithm is applied, read until exhausted
      * @param numOfFrames The number of frames in memory
      * @return The number of page faults generated by the algorithm
      */
-    private static int FIFOReplacement(ArrayList<Integer> rs, int numOfFrames) {
-        // All frames are empty
-        int[] frames = new int[numOfFrames];
-        // Index of oldest frame, count of page faults
-        int oldest = 0, numPageFaults = 0;
+    private static long FIFOReplacement(ReferenceStream rs, int numOfFrames) {
+        FIFOPolicy memory = new FIFOPolicy(numOfFrames);
 
-        // No pages loaded yet
-        Arrays.fill(frames, -1);
-
-        for (Integer r : rs) {
-            // Page fault
-            if (isInArray(frames, r) == -1) {
-                frames[oldest] = r;  // Copy new page into oldest page frame
-                numPageFaults++;  // Record this page fault
-                // Frames should be added sequentially, thus the next-oldest frame is the next one in the list
-                oldest = (oldest + 1) % (frames.length);
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (int i = 0; i < count; i++) {
+                memory.access(block[i]);
             }
         }
 
-        return numPageFaults;
+        return memory.faults();
     }
 
     /**
@@ -117,36 +668,113 @@ public class JustinHenleyCSCI331Proj4 {
      * @param numOfFrames The number of frames in memory
      * @return The number of page faults generated by the algorithm
      */
-    private static int LRUReplacement(ArrayList<Integer> rs, int numOfFrames) {
+    private static int LRUReplacement(ReferenceString rs, int numOfFrames) {
         // All frames are empty
         int[] frames = new int[numOfFrames];
-        // Count of the number of page faults
-        int numPageFaults = 0;
+        // Position in the reference string of the last use of each frame
+        int[] lastUse = new int[numOfFrames];
+        // Frame holding each page in memory
+        PageIndex pageFrames = new PageIndex(numOfFrames);
+        // Count of the number of page faults, number of frames filled so far
+        int numPageFaults = 0, used = 0;
 
-        // No pages loaded yet
-        Arrays.fill(frames, -1);
-
-        for (Integer r : rs) {
-            int index = isInArray(frames, r);
-            int most;  // most recently used page
+        for (int pos = 0; pos < rs.length(); pos++) {
+            int r = rs.get(pos);
+            int index = pageFrames.get(r);
 
             if (index == -1) {  // Page fault
-                most = r;
                 numPageFaults++;
-                index = 0;  // The first (least recently used) element will be removed
-            } else
-                most = frames[index];  // The page that is most recently moved shall get moved to the end
+                if (used < frames.length)
+                    index = used++;  // Fill an empty frame
+                else {
+                    // The least recently used page will be removed
+                    index = 0;
+                    for (int f = 1; f < frames.length; f++) {
+                        if (lastUse[f] < lastUse[index]) index = f;
+                    }
+                    pageFrames.remove(frames[index]);
+                }
+                frames[index] = r;
+                pageFrames.put(r, index);
+            }
 
-            // Shifts right side of array left, overwriting the position to be removed. Leaves last position unmodified
-            if (frames.length - 1 - index >= 0)
-                System.arraycopy(frames, index + 1, frames, index, frames.length - 1 - index);
-            // Adds the most recently used page to the end of the list, overwriting previous value
-            frames[frames.length - 1] = most;
+            // Record this page as the most recently used
+            lastUse[index] = pos;
         }
 
         return numPageFaults;
     }
 
+    /**
+     * Reports the number of page replacements after applying the LRU
+     * replacement algorithm to the given reference string
+     * Keeps frames in a doubly-linked recency list threaded through the frame slots, so both
+     * hits and evictions cost O(1), see LRUPolicy
+     * @param rs The references to which the algorithm is applied, read until exhausted
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
+     */
+    private static long LinkedLRUReplacement(ReferenceStream rs, int numOfFrames) {
+        LRUPolicy memory = new LRUPolicy(numOfFrames);
+
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (int i = 0; i < count; i++) {
+                memory.access(block[i]);
+            }
+        }
+
+        return memory.faults();
+    }
+
+    /**
+     * Reports the number of page replacements of the LRU replacement algorithm for every
+     * number of frames from 1 to maxFrames, in a single pass over the reference string
+     * LRU is a stack algorithm, so a reference hits in f frames exactly when its stack distance,
+     * the number of distinct pages referenced since the previous reference to the same page
+     * (inclusive), is at most f. Distances are counted with a Fenwick tree over positions
+     * holding a 1 at the latest reference to each page, so each reference costs O(log length)
+     * @param rs The reference string to with the algorithm is applied
+     * @param maxFrames The largest number of frames in memory to report
+     * @return faults[f] is the number of page faults with f frames, faults[0] is unused
+     */
+    private static int[] LRUFaultCurve(ReferenceString rs, int maxFrames) {
+        int length = rs.length();
+        // hits[d] is the number of references with stack distance d, for d <= maxFrames
+        int[] hits = new int[maxFrames + 1];
+        // References that miss at every number of frames, first references and distances over maxFrames
+        int alwaysMiss = 0;
+        // Latest position of each page seen so far
+        PageIndex lastSeen = new PageIndex(maxFrames);
+        FenwickTree latest = new FenwickTree(length);
+
+        for (int pos = 0; pos < length; pos++) {
+            int page = rs.get(pos);
+            int last = lastSeen.get(page);
+
+            if (last == -1)
+                alwaysMiss++;  // First reference to page misses with any number of frames
+            else {
+                // Distinct pages referenced after last, plus page itself
+                int distance = latest.sum(pos - 1) - latest.sum(last) + 1;
+                if (distance <= maxFrames) hits[distance]++;
+                else alwaysMiss++;
+                latest.add(last, -1);
+            }
+            latest.add(pos, 1);
+            lastSeen.put(page, pos);
+        }
+
+        // Faults with f frames are the references whose distance exceeds f
+        int[] faults = new int[maxFrames + 1];
+        int misses = alwaysMiss;
+        for (int f = maxFrames; f >= 1; f--) {
+            faults[f] = misses;
+            misses += hits[f];
+        }
+        return faults;
+    }
+
     /**
      * Reports the number of page replacements after applying the Optimal
      * replacement algorithm to the given reference string
@@ -154,9 +782,11 @@ public class JustinHenleyCSCI331Proj4 {
      * @param numOfFrames The number of frames in memory
      * @return The number of page faults generated by the algorithm
      */
-    private static int OptimalReplacement(ArrayList<Integer> rs, int numOfFrames) {
+    private static int OptimalReplacement(ReferenceString rs, int numOfFrames) {
         // All frames are empty
         int[] frames = new int[numOfFrames];
+        // Frame holding each page in memory
+        PageIndex pageFrames = new PageIndex(numOfFrames);
         // Count of the number of page faults
         int numPageFaults = 0;
 
@@ -164,12 +794,9 @@ public class JustinHenleyCSCI331Proj4 {
         Arrays.fill(frames, -1);
 
         // Iterate over entire reference string.  Used traditional for loop to access index for forward-search
-        for (int pos = 0; pos < rs.size(); pos++) {
+        for (int pos = 0; pos < rs.length(); pos++) {
             // Page fault
-            if (isInArray(frames, rs.get(pos)) == -1) {
-                // Create sublist of future references to search
-               List<Integer> futureRS = rs.subList(pos, rs.size());
-
+            if (pageFrames.get(rs.get(pos)) == -1) {
                int furthestFrameIndex = 0;
                int furthestFrameDistance = 0;
 
@@ -177,7 +804,8 @@ public class JustinHenleyCSCI331Proj4 {
                // If a page is never referenced, it sets distance to -1 to exit search and replace that page in memory
                 for (int f = 0; f < frames.length && furthestFrameDistance != -1; f++) {
                     int page = frames[f];
-                    int nextReference = futureRS.indexOf(page);
+                    // Search future references only
+                    int nextReference = rs.indexOf(page, pos);
 
                     // If no future reference occurs, this can be considered the furthest reference
                     if (nextReference == -1) {
@@ -195,7 +823,9 @@ public class JustinHenleyCSCI331Proj4 {
                 }
 
                 // Replace the frame with the furthest subsequent reference in the reference string
+                if (frames[furthestFrameIndex] != -1) pageFrames.remove(frames[furthestFrameIndex]);
                 frames[furthestFrameIndex] = rs.get(pos);
+                pageFrames.put(rs.get(pos), furthestFrameIndex);
                 // Record page fault
                 numPageFaults++;
 
@@ -208,132 +838,2963 @@ public class JustinHenleyCSCI331Proj4 {
     }
 
     /**
-     * Reports the number of page replacements after applying the Second Chance
+     * Reports the number of page replacements after applying the Optimal
      * replacement algorithm to the given reference string
+     * Precomputes the next use of every reference in one backward pass, then keeps the
+     * resident pages in a heap keyed by next use so each reference costs O(log numOfFrames)
      * @param rs The reference string to with the algorithm is applied
      * @param numOfFrames The number of frames in memory
      * @return The number of page faults generated by the algorithm
      */
-    private static int SecondChanceReplacement(ArrayList<Integer> rs, int numOfFrames) {
-        // All frames are empty
-        int[][] frames = new int[numOfFrames][2];
+    private static int NextUseOptimalReplacement(ReferenceString rs, int numOfFrames) {
+        int length = rs.length();
+        // nextUse[pos] is the position of the next reference to the page at pos, or length if there is none
+        int[] nextUse = new int[length];
+        // Position of the closest later reference to each page seen so far in the backward pass
+        PageIndex nextSeen = new PageIndex(numOfFrames);
+
+        for (int pos = length - 1; pos >= 0; pos--) {
+            int page = rs.get(pos);
+            int next = nextSeen.get(page);
+            nextUse[pos] = next == -1 ? length : next;
+            nextSeen.put(page, pos);
+        }
+
+        // frameAwaiting[pos] is the frame holding the page referenced at pos, or -1 if that page is not resident
+        // A resident page is always awaited at exactly one position, its next use, so this doubles as the page table
+        int[] frameAwaiting = new int[length];
+        NextUseHeap resident = new NextUseHeap(numOfFrames);
         // Count of the number of page faults
         int numPageFaults = 0;
-        // Pointer to the frame to be considered for replacement
-        int replace = 0;
 
         // No pages loaded yet
-        for(int i = 0; i < frames.length; i++) {
-            frames[i][0] = -1;
-            frames[i][1] = 0;
+        Arrays.fill(frameAwaiting, -1);
+
+        for (int pos = 0; pos < length; pos++) {
+            int frame = frameAwaiting[pos];
+
+            if (frame != -1) {
+                // Page is in memory, it is now awaited at its following reference
+                resident.setNextUse(frame, nextUse[pos]);
+            }
+            else if (resident.size() < numOfFrames) {  // Page fault with an empty frame available
+                frame = resident.size();
+                resident.add(frame, nextUse[pos]);
+                numPageFaults++;
+            }
+            else {  // Page fault, replace the page referenced furthest in the future
+                frame = resident.furthest();
+                long evictedNextUse = resident.nextUse(frame);
+                if (evictedNextUse < length)
+                    frameAwaiting[(int) evictedNextUse] = -1;
+                resident.setNextUse(frame, nextUse[pos]);
+                numPageFaults++;
+            }
+
+            if (nextUse[pos] < length)
+                frameAwaiting[nextUse[pos]] = frame;
         }
 
-        for (Integer r : rs) {
-            int index = isInArray(frames, r);
+        return numPageFaults;
+    }
 
-            if (index != -1) {
-                // If page is found in memory, set r-bit to 1
-                frames[index][1] = 1;
+    /**
+     * Reports the number of page replacements after applying the Optimal
+     * replacement algorithm to a trace file too large to hold in memory
+     * A backward pass over the trace, one chunk at a time, writes the position of the next use of
+     * every reference to a temporary file. A forward pass then streams the trace and the next uses
+     * together, keeping resident pages in a heap keyed by next use
+     * @param trace The trace to which the algorithm is applied
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
+     * @throws IOException If the trace or the temporary file cannot be read or written
+     */
+    private static long NextUseOptimalReplacement(TraceFile trace, int numOfFrames) throws IOException {
+        long length = trace.length();
+        Path nextUseFile = Files.createTempFile("nextuse", ".bin");
+
+        try (FileChannel nextUseChannel = FileChannel.open(nextUseFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Backward pass, chunks are visited last to first and each chunk back to front
+            PageIndex nextSeen = new PageIndex(numOfFrames);
+            int[] chunk = new int[TraceFile.CHUNK_SIZE];
+            ByteBuffer nextUses = ByteBuffer.allocateDirect(TraceFile.CHUNK_SIZE * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (long chunkStart = (length - 1) / chunk.length * chunk.length; chunkStart >= 0; chunkStart -= chunk.length) {
+                int count = (int) Math.min(chunk.length, length - chunkStart);
+                trace.read(chunkStart, chunk, count);
+                nextUses.clear();
+                for (int i = count - 1; i >= 0; i--) {
+                    long next = nextSeen.getLong(chunk[i]);
+                    nextUses.putLong(i * Long.BYTES, next == -1 ? Long.MAX_VALUE : next);
+                    nextSeen.putLong(chunk[i], chunkStart + i);
+                }
+                nextUses.limit(count * Long.BYTES);
+                while (nextUses.hasRemaining())
+                    nextUseChannel.write(nextUses, chunkStart * Long.BYTES + nextUses.position());
             }
-            else {  // page is not in memory
-                numPageFaults++;  // Record page fault
 
-                // Iterate until a frame is found where r-bit is 0
-                while (frames[replace][1] == 1) {
-                    frames[replace][1] = 0;
-                    replace = (replace + 1) % frames.length;
+            // Forward pass
+            int[] frames = new int[numOfFrames];
+            PageIndex pageFrames = new PageIndex(numOfFrames);
+            NextUseHeap resident = new NextUseHeap(numOfFrames);
+            long numPageFaults = 0;
+
+            for (long chunkStart = 0; chunkStart < length; chunkStart += chunk.length) {
+                int count = (int) Math.min(chunk.length, length - chunkStart);
+                trace.read(chunkStart, chunk, count);
+                LongBuffer next = nextUseChannel.map(FileChannel.MapMode.READ_ONLY, chunkStart * Long.BYTES,
+                        (long) count * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+                for (int i = 0; i < count; i++) {
+                    int page = chunk[i];
+                    int frame = pageFrames.get(page);
+
+                    if (frame != -1) {
+                        resident.setNextUse(frame, next.get(i));
+                        continue;
+                    }
+
+                    numPageFaults++;  // Page fault
+                    if (resident.size() < numOfFrames) {
+                        frame = resident.size();
+                        resident.add(frame, next.get(i));
+                    }
+                    else {
+                        // Replace the page referenced furthest in the future
+                        frame = resident.furthest();
+                        pageFrames.remove(frames[frame]);
+                        resident.setNextUse(frame, next.get(i));
+                    }
+                    frames[frame] = page;
+                    pageFrames.put(page, frame);
                 }
+            }
+            return numPageFaults;
+        }
+        finally {
+            Files.deleteIfExists(nextUseFile);
+        }
+    }
 
-                // Once a suitable frame is found, replace
-                frames[replace][0] = r;
-                frames[replace][1] = 0;
+    /**
+     * Reports the number of page replacements after applying the Second Chance
+     * replacement algorithm to the given reference string
+     * @param rs The references to which the algorithm is applied, read until exhausted
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
+     */
+    private static long SecondChanceReplacement(ReferenceStream rs, int numOfFrames) {
+        SecondChancePolicy memory = new SecondChancePolicy(numOfFrames);
 
-                // Increment replace
-                replace = (replace + 1) % frames.length;
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (int i = 0; i < count; i++) {
+                memory.access(block[i]);
             }
         }
 
-        return numPageFaults;
+        return memory.faults();
     }
 
     /**
-     * Searches for a page in memory
-     *
-     * @param frames The array of pages to search
-     * @param page The page to be found
-     * @return The index of page in frame, or -1 if not found
+     * Reports the number of page replacements after applying the ARC
+     * replacement algorithm to the given reference string
+     * @param rs The references to which the algorithm is applied, read until exhausted
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
      */
-    private static int isInArray(int[] frames, int page) {
-        for(int i = 0; i < frames.length; i++) {
-            if(frames[i] == page) return i;
+    private static long ARCReplacement(ReferenceStream rs, int numOfFrames) {
+        ARCPolicy memory = new ARCPolicy(numOfFrames);
+
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (int i = 0; i < count; i++) {
+                memory.access(block[i]);
+            }
         }
-        return -1;
+
+        return memory.faults();
     }
 
     /**
-     * Searches for a page in memory
-     * Specific to the Second Chance algorithm implementation only
-     *
-     * @param frames The array of pages to search
-     * @param page The page to be found
-     * @return The index of page in frame, or -1 if not found
+     * Reports the number of page replacements after applying the 2Q
+     * replacement algorithm to the given reference string
+     * @param rs The references to which the algorithm is applied, read until exhausted
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
      */
-    private  static int isInArray(int[][] frames, int page) {
-        for (int i = 0; i < frames.length; i++) {
-            if(frames[i][0] == page) return i;
+    private static long TwoQueueReplacement(ReferenceStream rs, int numOfFrames) {
+        TwoQueuePolicy memory = new TwoQueuePolicy(numOfFrames);
+
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (int i = 0; i < count; i++) {
+                memory.access(block[i]);
+            }
         }
-        return -1;
+
+        return memory.faults();
     }
 
     /**
-     * Displays the raw number of page faults per algorithm
-     * Displays a bar graph comparing relative number of page faults per algorithm
-     *
-     * @param optimal The page faults of the Optimal algorithm
-     * @param lru The page faults of the LRU algorithm
-     * @param secondChance The page faults of the Second Chance algorithm
-     * @param fifo The page faults of the FIFO algorithm
+     * Reports the number of page replacements after applying the CLOCK-Pro
+     * replacement algorithm to the given reference string
+     * @param rs The references to which the algorithm is applied, read until exhausted
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
      */
-    private static void displayResults(int optimal, int lru, int secondChance, int fifo) {
-        // Display raw number of page faults per algorithm
-        System.out.println("\n\n*** Page Faults Generated *** ");
-        System.out.println("   Optimal: " + optimal);
-        System.out.println("       LRU: " + lru);
-        System.out.println("2nd Chance: " + secondChance);
-        System.out.println("      FIFO: " + fifo);
+    private static long ClockProReplacement(ReferenceStream rs, int numOfFrames) {
+        ClockProPolicy memory = new ClockProPolicy(numOfFrames);
 
-        // Process values for graphing so fifo is always 50
-        int graphMax = 50;
-        double x = fifo / (double) graphMax;
-        optimal /= x;
-        lru /= x;
-        secondChance /= x;
-        fifo = graphMax;
-        char barChar = '#';
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (int i = 0; i < count; i++) {
+                memory.access(block[i]);
+            }
+        }
 
-        // Display bar graph of relative number of page faults
-        System.out.println("\n*** Relative Number of Faults Generated ***");
-        System.out.println("   Optimal: " + barGraph(optimal, barChar));
-        System.out.println("       LRU: " + barGraph(lru, barChar));
-        System.out.println("2nd Chance: " + barGraph(secondChance, barChar));
-        System.out.println("      FIFO: " + barGraph(fifo, barChar) + "\n");
+        return memory.faults();
     }
 
     /**
-     * Builds a bar to be displayed in a bar graph
+     * Reports the number of page replacements after applying the LFU
+     * replacement algorithm to the given reference string
+     * @param rs The references to which the algorithm is applied, read until exhausted
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
+     */
+    private static long LFUReplacement(ReferenceStream rs, int numOfFrames) {
+        LFUPolicy memory = new LFUPolicy(numOfFrames);
+
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (int i = 0; i < count; i++) {
+                memory.access(block[i]);
+            }
+        }
+
+        return memory.faults();
+    }
+
+    /**
+     * Reports the number of page replacements after applying the Enhanced Second Chance
+     * replacement algorithm to the given reference string, using its writes if it has any
+     * @param rs The reference string to with the algorithm is applied
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
+     */
+    private static int EnhancedSecondChanceReplacement(ReferenceString rs, int numOfFrames) {
+        EnhancedSecondChancePolicy memory = new EnhancedSecondChancePolicy(numOfFrames);
+        for (int pos = 0; pos < rs.length(); pos++) {
+            memory.access(rs.get(pos), rs.isWrite(pos));
+        }
+        return (int) memory.faults();
+    }
+
+    /**
+     * Applies the streaming algorithms to a reference string held in memory
      *
-     * @param length The length of the bar (in characters)
-     * @param c A character to build the bar
-     * @return A String of c chars repeated length times
+     * @param rs The reference string to with the algorithm is applied
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
      */
-    private static String barGraph(int length, char c) {
-        return String.valueOf(c).repeat(Math.max(0, length));
+    private static int FIFOReplacement(ReferenceString rs, int numOfFrames) {
+        return (int) FIFOReplacement(rs.stream(), numOfFrames);
     }
-}
 
+    private static int LinkedLRUReplacement(ReferenceString rs, int numOfFrames) {
+        return (int) LinkedLRUReplacement(rs.stream(), numOfFrames);
+    }
 
-/*
-SAMPLE RUN
+    private static int SecondChanceReplacement(ReferenceString rs, int numOfFrames) {
+        return (int) SecondChanceReplacement(rs.stream(), numOfFrames);
+    }
+
+    private static int ARCReplacement(ReferenceString rs, int numOfFrames) {
+        return (int) ARCReplacement(rs.stream(), numOfFrames);
+    }
+
+    private static int TwoQueueReplacement(ReferenceString rs, int numOfFrames) {
+        return (int) TwoQueueReplacement(rs.stream(), numOfFrames);
+    }
+
+    private static int ClockProReplacement(ReferenceString rs, int numOfFrames) {
+        return (int) ClockProReplacement(rs.stream(), numOfFrames);
+    }
+
+    private static int LFUReplacement(ReferenceString rs, int numOfFrames) {
+        return (int) LFUReplacement(rs.stream(), numOfFrames);
+    }
+
+    /**
+     * Applies several online algorithms to the same references in a single pass
+     * Each block of references is read once and fed to every algorithm in turn while it is still in
+     * cache, so a trace too large for cache, or one read from disk, is only streamed once
+     *
+     * @param rs The references to which the algorithms are applied, read until exhausted
+     * @param numOfFrames The number of frames in memory
+     * @param algorithms The algorithms to apply, all of them streaming
+     * @return faults[a] is the number of page faults generated by algorithms[a]
+     */
+    private static long[] simulate(ReferenceStream rs, int numOfFrames, Algorithm[] algorithms) {
+        ReplacementPolicy[] memories = new ReplacementPolicy[algorithms.length];
+        for (int a = 0; a < algorithms.length; a++) {
+            memories[a] = algorithms[a].policy(numOfFrames);
+        }
+        simulate(rs, memories);
+
+        long[] faults = new long[algorithms.length];
+        for (int a = 0; a < algorithms.length; a++) {
+            faults[a] = memories[a].faults();
+        }
+        return faults;
+    }
+
+    /**
+     * Applies several online algorithms to a reference string with writes, in a single pass,
+     * counting the modified pages each has to write back to disk when evicting them
+     * Pages still modified in memory at the end are not counted
+     *
+     * @param rs The reference string to which the algorithms are applied
+     * @param numOfFrames The number of frames in memory
+     * @param algorithms The algorithms to apply, all of them streaming
+     * @return results[0][a] and results[1][a] are the page faults and write-backs of algorithms[a]
+     */
+    private static long[][] simulateWrites(ReferenceString rs, int numOfFrames, Algorithm[] algorithms) {
+        DirtyTrackingPolicy[] memories = new DirtyTrackingPolicy[algorithms.length];
+        for (int a = 0; a < algorithms.length; a++) {
+            memories[a] = new DirtyTrackingPolicy(algorithms[a].policy(numOfFrames));
+        }
+
+        // Feed a block at a time to every memory while the block is in cache, as simulate does
+        for (int from = 0; from < rs.length(); from += BLOCK_SIZE) {
+            int end = Math.min(rs.length(), from + BLOCK_SIZE);
+            for (DirtyTrackingPolicy memory : memories) {
+                for (int pos = from; pos < end; pos++) {
+                    memory.access(rs.get(pos), rs.isWrite(pos));
+                }
+            }
+        }
+
+        long[][] results = new long[2][algorithms.length];
+        for (int a = 0; a < algorithms.length; a++) {
+            results[0][a] = memories[a].faults();
+            results[1][a] = memories[a].writeBacks();
+        }
+        return results;
+    }
+
+    /**
+     * Applies one replacement policy to the given references
+     *
+     * @param rs The references to which the policy is applied, read until exhausted
+     * @param memory The memory managed by the policy
+     * @return The number of page faults generated by the policy
+     */
+    private static long simulate(ReferenceStream rs, ReplacementPolicy memory) {
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            memory.accessAll(block, count);
+        }
+        return memory.faults();
+    }
+
+    /**
+     * Feeds the same references to several memories in a single pass, see simulate above
+     *
+     * @param rs The references to feed, read until exhausted
+     * @param memories The memories fed
+     */
+    private static void simulate(ReferenceStream rs, ReplacementPolicy[] memories) {
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (ReplacementPolicy memory : memories) {
+                memory.accessAll(block, count);
+            }
+        }
+    }
+
+    /**
+     * Applies a variable allocation algorithm to the given references
+     *
+     * @param rs The references to which the algorithm is applied, read until exhausted
+     * @param memory The memory managed by the algorithm
+     * @return memory, holding the number of page faults and the average resident set size
+     */
+    private static VariableMemory simulate(ReferenceStream rs, VariableMemory memory) {
+        int[] block = new int[BLOCK_SIZE];
+        for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+            for (int i = 0; i < count; i++) {
+                memory.access(block[i]);
+            }
+        }
+        return memory;
+    }
+
+    /**
+     * Applies LRU to the references of several processes sharing memory, once with global replacement
+     * over all frames and once with local replacement over an equal share of frames per process,
+     * and prints the page faults of each along with how evenly they fall on the processes
+     *
+     * @param workload The processes
+     * @param rs References generated by workload
+     * @param numOfFrames The number of frames in memory, at least one per process
+     */
+    private static void compareGlobalLocal(MultiProcessWorkload workload, ReferenceString rs, int numOfFrames) {
+        int numOfProcesses = workload.numOfProcesses();
+        LRUPolicy global = new LRUPolicy(numOfFrames);
+        LocalLRUPolicy local = new LocalLRUPolicy(numOfFrames, numOfProcesses, workload.pagesPerProcess());
+        long[] globalFaults = new long[numOfProcesses];
+        long[] localFaults = new long[numOfProcesses];
+        long[] references = new long[numOfProcesses];
+
+        int[] block = new int[BLOCK_SIZE];
+        ReferenceStream stream = rs.stream();
+        for (int count = stream.read(block); count != -1; count = stream.read(block)) {
+            for (int i = 0; i < count; i++) {
+                int process = workload.processOf(block[i]);
+                references[process]++;
+                if (global.access(block[i]) != ReplacementPolicy.HIT) globalFaults[process]++;
+                if (local.access(block[i]) != ReplacementPolicy.HIT) localFaults[process]++;
+            }
+        }
+
+        int fewerLocal = 0, fewerGlobal = 0;
+        double worstGlobal = 0, worstLocal = 0;
+        for (int p = 0; p < numOfProcesses; p++) {
+            if (localFaults[p] < globalFaults[p]) fewerLocal++;
+            else if (globalFaults[p] < localFaults[p]) fewerGlobal++;
+            if (references[p] > 0) {
+                worstGlobal = Math.max(worstGlobal, (double) globalFaults[p] / references[p]);
+                worstLocal = Math.max(worstLocal, (double) localFaults[p] / references[p]);
+            }
+        }
+
+        System.out.println("\n*** Page Faults Generated by " + numOfProcesses + " Processes *** ");
+        System.out.printf("%10s: %d (worst fault rate of a process %.3f)%n", "Global LRU", global.faults(), worstGlobal);
+        System.out.printf("%10s: %d (worst fault rate of a process %.3f)%n", "Local LRU", local.faults(), worstLocal);
+        System.out.println("Processes faulting less under local replacement: " + fewerLocal
+                + ", under global replacement: " + fewerGlobal);
+    }
+
+    /**
+     * Adapters for reference strings held as a list of boxed page numbers
+     * Each copies rs into a ReferenceString once and applies the matching algorithm
+     *
+     * @param rs The reference string to with the algorithm is applied
+     * @param numOfFrames The number of frames in memory
+     * @return The number of page faults generated by the algorithm
+     */
+    private static int FIFOReplacement(ArrayList<Integer> rs, int numOfFrames) {
+        return FIFOReplacement(ReferenceString.of(rs), numOfFrames);
+    }
+
+    private static int LRUReplacement(ArrayList<Integer> rs, int numOfFrames) {
+        return LRUReplacement(ReferenceString.of(rs), numOfFrames);
+    }
+
+    private static int OptimalReplacement(ArrayList<Integer> rs, int numOfFrames) {
+        return OptimalReplacement(ReferenceString.of(rs), numOfFrames);
+    }
+
+    private static int SecondChanceReplacement(ArrayList<Integer> rs, int numOfFrames) {
+        return SecondChanceReplacement(ReferenceString.of(rs), numOfFrames);
+    }
+
+    /**
+     * Applies several algorithms at a range of frame counts to one reference string
+     * Every (algorithm, frames) pair is an independent job run on a fork/join pool,
+     * and all jobs share the same read-only reference string
+     *
+     * @param rs The reference string to with the algorithms are applied
+     * @param algorithms The algorithms to apply
+     * @param minFrames The smallest number of frames in memory
+     * @param maxFrames The largest number of frames in memory
+     * @param threads The number of worker threads
+     * @return faults[a][f - minFrames] is the number of page faults of algorithms[a] with f frames
+     * @throws IllegalArgumentException If minFrames is not positive or maxFrames is less than minFrames
+     */
+    private static int[][] sweep(ReferenceString rs, Algorithm[] algorithms, int minFrames, int maxFrames, int threads) {
+        if (minFrames <= 0 || maxFrames < minFrames)
+            throw new IllegalArgumentException("frames must satisfy 1 <= minFrames <= maxFrames");
+        int[][] faults = new int[algorithms.length][maxFrames - minFrames + 1];
+        List<Callable<Void>> jobs = new ArrayList<>();
+
+        // Larger frame counts are queued first, so the longest jobs do not start last
+        for (int f = maxFrames; f >= minFrames; f--) {
+            for (int a = 0; a < algorithms.length; a++) {
+                int algorithm = a, numOfFrames = f;
+                jobs.add(() -> {
+                    faults[algorithm][numOfFrames - minFrames] = algorithms[algorithm].faults(rs, numOfFrames);
+                    return null;
+                });
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // Waiting on every result also makes each job's writes visible here
+            for (Future<Void> job : pool.invokeAll(jobs)) job.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sweep interrupted", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Sweep job failed", e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+        return faults;
+    }
+
+    /**
+     * Benchmarks createRS and every algorithm over each combination of the given parameters and prints,
+     * as CSV, the throughput in references per second and the bytes allocated per reference
+     * The allocation of createRS is left blank, as its work is spread over the fork/join pool
+     * Each benchmark is run untimed to let the JIT compile it, then timed over several repetitions
+     * The virtual memory size is 4096 and the probability of transition 0.1 throughout
+     *
+     * @param lengths The lengths of reference string to benchmark
+     * @param loci The sizes of locus to benchmark
+     * @param rates The rates of motion to benchmark
+     * @param frameCounts The numbers of frames to benchmark
+     */
+    private static void benchmarkAll(int[] lengths, int[] loci, int[] rates, int[] frameCounts) {
+        System.out.println("benchmark,length,locus,rate,frames,refsPerSec,bytesPerRef");
+        for (int length : lengths) {
+            for (int locus : loci) {
+                for (int rate : rates) {
+                    String params = length + "," + locus + "," + rate;
+                    ReferenceString rs = createRS(4096, length, locus, rate, 0.1, BENCHMARK_SEED);
+                    printBenchmark("createRS", params + ",", rs.length(), false,
+                            () -> createRS(4096, length, locus, rate, 0.1, BENCHMARK_SEED).length());
+
+                    for (int numOfFrames : frameCounts) {
+                        for (Algorithm algorithm : Algorithm.values()) {
+                            printBenchmark(algorithm.label, params + "," + numOfFrames, rs.length(),
+                                    () -> algorithm.faults(rs, numOfFrames));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Benchmarks the ways FIFO can find a page in memory: scanning the frames one at a time,
+     * scanning them with vector compares if VectorFrameSearch can be loaded, and the hash index
+     * used by FIFOReplacement
+     *
+     * @param frameCounts The numbers of frames to benchmark
+     */
+    private static void benchmarkFrameSearch(int[] frameCounts) {
+        FrameSearch vector = FrameSearch.vector();
+        if (vector == null)
+            System.err.println("Vector search unavailable, run with --add-modules jdk.incubator.vector to include it");
+
+        int length = 1_000_000, locus = 100, rate = 50;
+        ReferenceString rs = createRS(4096, length, locus, rate, 0.1, BENCHMARK_SEED);
+        System.out.println("benchmark,length,locus,rate,frames,refsPerSec,bytesPerRef");
+        for (int numOfFrames : frameCounts) {
+            String params = rs.length() + "," + locus + "," + rate + "," + numOfFrames;
+            long faults = FIFOReplacement(rs.stream(), numOfFrames);
+            List<FrameSearch> searches = new ArrayList<>(List.of(new ScalarFrameSearch()));
+            if (vector != null) searches.add(vector);
+            for (FrameSearch search : searches) {
+                if (simulate(rs.stream(), new ScanningFIFOPolicy(numOfFrames, search)) != faults)
+                    throw new IllegalStateException(search.getClass().getName() + " disagrees with FIFOReplacement");
+                printBenchmark("FIFO " + search.getClass().getName(), params, rs.length(),
+                        () -> (int) simulate(rs.stream(), new ScanningFIFOPolicy(numOfFrames, search)));
+            }
+            printBenchmark("FIFO PageIndex", params, rs.length(), () -> (int) FIFOReplacement(rs.stream(), numOfFrames));
+        }
+    }
+
+    /**
+     * Measures one benchmark and prints its row of results
+     *
+     * @param name The name of the benchmark
+     * @param params The parameter columns of the row
+     * @param refs The number of references processed by each run of the benchmark
+     * @param benchmark One run of the benchmark, returning any value that depends on its work
+     */
+    private static void printBenchmark(String name, String params, long refs, IntSupplier benchmark) {
+        printBenchmark(name, params, refs, true, benchmark);
+    }
+
+    /**
+     * Measures one benchmark and prints its row of results
+     *
+     * @param name The name of the benchmark
+     * @param params The parameter columns of the row
+     * @param refs The number of references processed by each run of the benchmark
+     * @param measureAllocation Whether to report allocation, which only counts the calling thread, so
+     *                          must be false for a benchmark that does its work on other threads
+     * @param benchmark One run of the benchmark, returning any value that depends on its work
+     */
+    private static void printBenchmark(String name, String params, long refs, boolean measureAllocation,
+                                       IntSupplier benchmark) {
+        // Allocation is only measurable where the JVM supports per-thread allocation counters
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = measureAllocation && threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) benchmarkSink += benchmark.getAsInt();
+
+        long allocatedBefore = allocation == null ? 0 : allocation.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) benchmarkSink += benchmark.getAsInt();
+        long nanos = System.nanoTime() - start;
+        long allocated = allocation == null ? -1 : allocation.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        double totalRefs = (double) refs * MEASURED_ITERATIONS;
+        System.out.printf("%s,%s,%.0f,%s%n", name, params, totalRefs / (nanos / 1e9),
+                allocation == null ? "" : String.format("%.3f", allocated / totalRefs));
+    }
+
+    // Parses a comma-separated list of ints
+    private static int[] parseList(String list) {
+        String[] values = list.split(",");
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) result[i] = Integer.parseInt(values[i]);
+        return result;
+    }
+
+    // Parses a range of ints, one value or min,max
+    private static int[] parseRange(String range) {
+        int[] values = parseList(range);
+        checkRange(values.length, values[values.length - 1] < values[0]);
+        return values;
+    }
+
+    // Parses a range of doubles, one value or min,max
+    private static double[] parseDoubleRange(String range) {
+        double[] values = parseDoubleList(range);
+        checkRange(values.length, values[values.length - 1] < values[0]);
+        return values;
+    }
+
+    private static void checkRange(int length, boolean descending) {
+        if (length > 2) throw new IllegalArgumentException("a range is one value or min,max");
+        if (descending) throw new IllegalArgumentException("range end must be >= start");
+    }
+
+    private static Algorithm[] parseAlgorithms(String list) {
+        String[] names = list.split(",");
+        Algorithm[] algorithms = new Algorithm[names.length];
+        for (int i = 0; i < names.length; i++) algorithms[i] = Algorithm.valueOf(names[i].toUpperCase());
+        return algorithms;
+    }
+
+    private static double[] parseDoubleList(String list) {
+        String[] values = list.split(",");
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) result[i] = Double.parseDouble(values[i]);
+        return result;
+    }
+
+    /**
+     * Times the scanning and linked LRU implementations on the same reference strings
+     * at increasing numbers of frames and prints the speedup of the linked implementation
+     */
+    private static void benchmarkLRU() {
+        int[] frameCounts = {64, 1024, 16384};
+        int length = 2_000_000;
+
+        System.out.println("frames, scan ms, linked ms, speedup, faults");
+        for (int numOfFrames : frameCounts) {
+            // A locus slightly larger than memory keeps both hits and evictions frequent
+            ReferenceString rs = createRS(1 << 20, length, numOfFrames + numOfFrames / 4, 1000, 0.1, BENCHMARK_SEED);
+
+            // Warm up both methods before timing
+            int scanFaults = LRUReplacement(rs, numOfFrames);
+            int linkedFaults = LinkedLRUReplacement(rs, numOfFrames);
+            if (scanFaults != linkedFaults)
+                throw new IllegalStateException("LRU implementations disagree at " + numOfFrames + " frames");
+
+            long start = System.nanoTime();
+            LRUReplacement(rs, numOfFrames);
+            long scanNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            LinkedLRUReplacement(rs, numOfFrames);
+            long linkedNanos = System.nanoTime() - start;
+
+            System.out.printf("%d, %.1f, %.1f, %.1fx, %d%n", numOfFrames, scanNanos / 1e6, linkedNanos / 1e6,
+                    scanNanos / (double) linkedNanos, linkedFaults);
+        }
+    }
+
+    /**
+     * Displays the raw number of page faults per algorithm
+     * Displays a bar graph comparing relative number of page faults per algorithm
+     *
+     * @param faults The page faults of each algorithm, indexed by Algorithm ordinal
+     */
+    private static void displayResults(int[] faults) {
+        Algorithm[] algorithms = Algorithm.values();
+
+        // Display raw number of page faults per algorithm
+        System.out.println("\n\n*** Page Faults Generated *** ");
+        for (Algorithm algorithm : algorithms) {
+            System.out.printf("%10s: %d%n", algorithm.label, faults[algorithm.ordinal()]);
+        }
+
+        // Process values for graphing so the most faults is always 50, LFU can far exceed FIFO
+        int graphMax = 50;
+        int mostFaults = Math.max(1, Arrays.stream(faults).max().orElse(0));
+        double x = mostFaults / (double) graphMax;
+        char barChar = '#';
+
+        // Display bar graph of relative number of page faults
+        System.out.println("\n*** Relative Number of Faults Generated ***");
+        for (Algorithm algorithm : algorithms) {
+            int length = (int) (faults[algorithm.ordinal()] / x);
+            System.out.printf("%10s: %s%n", algorithm.label, barGraph(length, barChar));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Builds a bar to be displayed in a bar graph
+     *
+     * @param length The length of the bar (in characters)
+     * @param c A character to build the bar
+     * @return A String of c chars repeated length times
+     */
+    private static String barGraph(int length, char c) {
+        return String.valueOf(c).repeat(Math.max(0, length));
+    }
+}
+
+/**
+ * A source of page references read a block at a time, so references need not all be in memory at once
+ */
+interface ReferenceStream {
+    /**
+     * Reads the next references
+     *
+     * @param buffer The array to fill with references
+     * @return The number of references read, at least 1, or -1 if there are no more references
+     */
+    int read(int[] buffer);
+}
+
+/**
+ * A reference string stored in a binary trace file
+ * The file is a 16 byte header, the magic number PGTR then a version number as ints and the number
+ * of references as a long, followed by each page number as an int, all little-endian
+ * The file is read through memory-mapped windows, so traces far larger than memory can be replayed
+ */
+final class TraceFile implements Closeable {
+    static final int CHUNK_SIZE = 1 << 20;             // References read at a time by callers that need random access
+
+    private static final int MAGIC = 0x50475452;       // "PGTR"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final long WINDOW_BYTES = 1L << 28; // Bytes of the file mapped at a time, a multiple of 4
+
+    private final FileChannel channel;
+    private final long length;
+    private IntBuffer window;          // Currently mapped part of the file
+    private long windowStart = -1;     // Position of the first reference in window
+
+    private TraceFile(FileChannel channel, long length) {
+        this.channel = channel;
+        this.length = length;
+    }
+
+    /**
+     * Writes references to a new trace file, replacing any existing file
+     *
+     * @param path The file to write
+     * @param rs The references to write, read until exhausted
+     * @throws IOException If the file cannot be written
+     */
+    static void write(Path path, ReferenceStream rs) throws IOException {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int[] block = new int[JustinHenleyCSCI331Proj4.BLOCK_SIZE];
+            ByteBuffer bytes = ByteBuffer.allocateDirect(block.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long length = 0;
+
+            out.position(HEADER_BYTES);
+            for (int count = rs.read(block); count != -1; count = rs.read(block)) {
+                bytes.clear();
+                bytes.asIntBuffer().put(block, 0, count);
+                bytes.limit(count * Integer.BYTES);
+                while (bytes.hasRemaining()) out.write(bytes);
+                length += count;
+            }
+
+            // Header is written last, once the number of references is known
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(length).flip();
+            while (header.hasRemaining()) out.write(header, header.position());
+        }
+    }
+
+    /**
+     * Opens a trace file for reading
+     *
+     * @param path The file to read
+     * @return The opened trace
+     * @throws IOException If the file cannot be read or is not a trace file
+     */
+    static TraceFile open(Path path) throws IOException {
+        FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && in.read(header, header.position()) != -1) { }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException(path + " is not a version " + VERSION + " trace file");
+            long length = header.getLong();
+            long stored = (in.size() - HEADER_BYTES) / Integer.BYTES;  // References the file has room for
+            if (length < 0 || length > stored)
+                throw new IOException(path + " claims " + length + " references at byte offset 8 but holds " + stored);
+            return new TraceFile(in, length);
+        }
+        catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of references in the trace
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Copies references from the trace
+     *
+     * @param from The position of the first reference to copy
+     * @param buffer The array to copy into, starting at index 0
+     * @param count The number of references to copy, all within the trace
+     * @throws UncheckedIOException If part of the file cannot be mapped, or a page copied is negative
+     */
+    void read(long from, int[] buffer, int count) {
+        int copied = 0;
+        while (copied < count) {
+            long pos = from + copied;
+            if (window == null || pos < windowStart || pos >= windowStart + window.capacity())
+                mapWindow(pos);
+            int offset = (int) (pos - windowStart);
+            int n = Math.min(count - copied, window.capacity() - offset);
+            window.get(offset, buffer, copied, n);
+            // Negative pages would collide with the markers of empty slots, so the trace is rejected instead
+            int negative = 0;
+            for (int i = copied; i < copied + n; i++) negative |= buffer[i];
+            if (negative < 0) {
+                int i = copied;
+                while (buffer[i] >= 0) i++;
+                throw new UncheckedIOException(new IOException("negative page " + buffer[i] + " in trace at byte offset "
+                        + (HEADER_BYTES + (from + i) * Integer.BYTES)));
+            }
+            copied += n;
+        }
+    }
+
+    /**
+     * @return A stream that reads the trace from the start
+     */
+    ReferenceStream stream() {
+        return new ReferenceStream() {
+            private long pos = 0;
+
+            @Override
+            public int read(int[] buffer) {
+                if (pos == length) return -1;
+                int count = (int) Math.min(buffer.length, length - pos);
+                TraceFile.this.read(pos, buffer, count);
+                pos += count;
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    // Maps the window of the file holding the reference at pos
+    private void mapWindow(long pos) {
+        long start = pos / (WINDOW_BYTES / Integer.BYTES) * (WINDOW_BYTES / Integer.BYTES);
+        long bytes = Math.min(WINDOW_BYTES, (length - start) * Integer.BYTES);
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + start * Integer.BYTES, bytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            windowStart = start;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
+
+/**
+ * A reference string of page numbers held in a primitive array, so replacement algorithms
+ * can walk it without unboxing
+ */
+final class ReferenceString {
+    private final int[] pages;
+    private final long[] writes;  // Bit pos % 64 of word pos / 64 is set if reference pos writes its page, null if none do
+
+    /**
+     * Wraps an array of page numbers without copying it, every reference a read
+     *
+     * @param pages The page numbers in reference order, not modified afterwards
+     */
+    ReferenceString(int[] pages) {
+        this(pages, null);
+    }
+
+    private ReferenceString(int[] pages, long[] writes) {
+        this.pages = pages;
+        this.writes = writes;
+    }
+
+    /**
+     * Makes each reference of this string a write with a given probability, and a read otherwise
+     *
+     * @param writeProb The probability of each reference being a write
+     * @param seed Seed of the random choices, so the same seed gives the same writes
+     * @return A reference string sharing the pages of this one
+     */
+    ReferenceString withWrites(double writeProb, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] writes = new long[(pages.length + 63) >>> 6];
+        for (int pos = 0; pos < pages.length; pos++) {
+            if (random.nextDouble() < writeProb) writes[pos >>> 6] |= 1L << pos;
+        }
+        return new ReferenceString(pages, writes);
+    }
+
+    /**
+     * Copies a list of boxed page numbers into a new reference string
+     *
+     * @param rs The page numbers in reference order
+     * @return A reference string holding the same pages
+     */
+    static ReferenceString of(List<Integer> rs) {
+        int[] pages = new int[rs.size()];
+        int pos = 0;
+        for (int page : rs) pages[pos++] = page;
+        return new ReferenceString(pages);
+    }
+
+    /**
+     * @return The number of references in the string
+     */
+    int length() {
+        return pages.length;
+    }
+
+    /**
+     * @param pos A position in the reference string
+     * @return The page referenced at pos
+     */
+    int get(int pos) {
+        return pages[pos];
+    }
+
+    /**
+     * @param pos A position in the reference string
+     * @return true if the reference at pos writes its page, false if it only reads it
+     */
+    boolean isWrite(int pos) {
+        return writes != null && (writes[pos >>> 6] & (1L << pos)) != 0;
+    }
+
+    /**
+     * @return A stream that reads this reference string from the start
+     */
+    ReferenceStream stream() {
+        return new ReferenceStream() {
+            private int pos = 0;
+
+            @Override
+            public int read(int[] buffer) {
+                if (pos == pages.length) return -1;
+                int count = Math.min(buffer.length, pages.length - pos);
+                System.arraycopy(pages, pos, buffer, 0, count);
+                pos += count;
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Searches for the next reference to a page
+     *
+     * @param page The page to be found
+     * @param from The position to start searching from
+     * @return The position of the first reference to page at or after from, or -1 if not found
+     */
+    int indexOf(int page, int from) {
+        for (int pos = from; pos < pages.length; pos++) {
+            if (pages[pos] == page) return pos;
+        }
+        return -1;
+    }
+}
+
+/**
+ * A map from page numbers to ints, such as the frame holding each page in memory
+ * Uses open addressing with linear probing over primitive arrays, so lookups cost O(1)
+ * regardless of the number of frames and never box a page number
+ */
+final class PageIndex {
+    private static final int NO_PAGE = -1;  // Marks an empty slot, never a valid page number
+
+    private int[] pages;
+    private long[] values;
+    private int size;
+    private int shift;  // 32 - log2(capacity), used to take the top bits of the hash
+
+    /**
+     * Creates an empty index
+     *
+     * @param expectedSize The number of pages expected in the index at once, it grows beyond this if needed
+     */
+    PageIndex(int expectedSize) {
+        allocate(Math.max(4, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1));
+    }
+
+    /**
+     * @param page The page to be found, never -1
+     * @return The value stored for page, or -1 if page is not in the index
+     */
+    int get(int page) {
+        return (int) getLong(page);
+    }
+
+    /**
+     * Stores a value for a page, replacing any previous value
+     *
+     * @param page The page to store, never -1
+     * @param value The value to store
+     */
+    void put(int page, int value) {
+        putLong(page, value);
+    }
+
+    /**
+     * @param page The page to be found, never -1
+     * @return The value stored for page, or -1 if page is not in the index
+     */
+    long getLong(int page) {
+        int mask = pages.length - 1;
+        for (int slot = slotOf(page); ; slot = (slot + 1) & mask) {
+            int p = pages[slot];
+            if (p == page) return values[slot];
+            if (p == NO_PAGE) return -1;
+        }
+    }
+
+    /**
+     * Stores a value for a page, replacing any previous value
+     *
+     * @param page The page to store, never -1
+     * @param value The value to store
+     */
+    void putLong(int page, long value) {
+        int mask = pages.length - 1;
+        int slot = slotOf(page);
+        while (pages[slot] != NO_PAGE && pages[slot] != page) slot = (slot + 1) & mask;
+        if (pages[slot] == NO_PAGE) {
+            pages[slot] = page;
+            // Keep the table at most half full so probe sequences stay short
+            if (++size * 2 > pages.length) {
+                values[slot] = value;
+                grow();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Removes a page from the index if it is present
+     *
+     * @param page The page to remove
+     */
+    void remove(int page) {
+        int mask = pages.length - 1;
+        int slot = slotOf(page);
+        while (pages[slot] != page) {
+            if (pages[slot] == NO_PAGE) return;
+            slot = (slot + 1) & mask;
+        }
+        size--;
+
+        // Shift later entries of the probe sequence back so no lookup stops early at the hole
+        int hole = slot;
+        for (slot = (slot + 1) & mask; pages[slot] != NO_PAGE; slot = (slot + 1) & mask) {
+            int home = slotOf(pages[slot]);
+            // Move the entry if its home slot is not cyclically between the hole and its slot
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                pages[hole] = pages[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        pages[hole] = NO_PAGE;
+    }
+
+    /**
+     * @return The number of pages in the index
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every page from the index
+     */
+    void clear() {
+        Arrays.fill(pages, NO_PAGE);
+        size = 0;
+    }
+
+    private int slotOf(int page) {
+        // Fibonacci hashing spreads consecutive page numbers across the table
+        return (page * 0x9E3779B9) >>> shift;
+    }
+
+    private void allocate(int capacity) {
+        pages = new int[capacity];
+        values = new long[capacity];
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        Arrays.fill(pages, NO_PAGE);
+    }
+
+    private void grow() {
+        int[] oldPages = pages;
+        long[] oldValues = values;
+        allocate(pages.length * 2);
+        int mask = pages.length - 1;
+        for (int i = 0; i < oldPages.length; i++) {
+            if (oldPages[i] == NO_PAGE) continue;
+            int slot = slotOf(oldPages[i]);
+            while (pages[slot] != NO_PAGE) slot = (slot + 1) & mask;
+            pages[slot] = oldPages[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
+
+/**
+ * Doubly-linked lists threaded through an array of frame slots
+ * Each slot belongs to at most one list at a time, and every operation costs O(1)
+ */
+final class FrameLists {
+    private static final int NONE = -1;
+
+    private int[] prev;         // Slot before each slot in its list, toward the first
+    private int[] next;         // Slot after each slot in its list, toward the last
+    private final int[] first;  // First slot of each list
+    private final int[] last;   // Last slot of each list
+    private final int[] size;   // Number of slots in each list
+
+    /**
+     * Creates empty lists
+     *
+     * @param numOfSlots The number of slots shared by the lists
+     * @param numOfLists The number of lists
+     */
+    FrameLists(int numOfSlots, int numOfLists) {
+        prev = new int[numOfSlots];
+        next = new int[numOfSlots];
+        first = new int[numOfLists];
+        last = new int[numOfLists];
+        size = new int[numOfLists];
+        Arrays.fill(first, NONE);
+        Arrays.fill(last, NONE);
+    }
+
+    /**
+     * Adds a slot to the front of a list
+     *
+     * @param list The list to add to
+     * @param slot A slot not in any list
+     */
+    void addFirst(int list, int slot) {
+        prev[slot] = NONE;
+        next[slot] = first[list];
+        if (first[list] != NONE) prev[first[list]] = slot;
+        else last[list] = slot;
+        first[list] = slot;
+        size[list]++;
+    }
+
+    /**
+     * Removes a slot from a list
+     *
+     * @param list The list holding slot
+     * @param slot The slot to remove
+     */
+    void remove(int list, int slot) {
+        if (prev[slot] != NONE) next[prev[slot]] = next[slot];
+        else first[list] = next[slot];
+        if (next[slot] != NONE) prev[next[slot]] = prev[slot];
+        else last[list] = prev[slot];
+        size[list]--;
+    }
+
+    /**
+     * Adds slots, numbered after the existing ones
+     *
+     * @param numOfSlots The number of slots wanted, ignored if there are already as many
+     */
+    void ensureSlots(int numOfSlots) {
+        if (numOfSlots <= prev.length) return;
+        prev = Arrays.copyOf(prev, numOfSlots);
+        next = Arrays.copyOf(next, numOfSlots);
+    }
+
+    /**
+     * Empties every list
+     */
+    void clear() {
+        Arrays.fill(first, NONE);
+        Arrays.fill(last, NONE);
+        Arrays.fill(size, 0);
+    }
+
+    /**
+     * Moves a slot to the front of its list
+     *
+     * @param list The list holding slot
+     * @param slot The slot to move
+     */
+    void moveToFirst(int list, int slot) {
+        if (first[list] == slot) return;
+        remove(list, slot);
+        addFirst(list, slot);
+    }
+
+    /**
+     * @param list A list
+     * @return The first slot of the list, or -1 if it is empty
+     */
+    int first(int list) {
+        return first[list];
+    }
+
+    /**
+     * @param list A list
+     * @return The last slot of the list, or -1 if it is empty
+     */
+    int last(int list) {
+        return last[list];
+    }
+
+    /**
+     * @param list A list
+     * @return The number of slots in the list
+     */
+    int size(int list) {
+        return size[list];
+    }
+}
+
+/**
+ * A Fenwick (binary indexed) tree of ints supporting point updates and prefix sums in O(log n)
+ */
+final class FenwickTree {
+    private final int[] tree;  // 1-based partial sums
+
+    /**
+     * Creates a tree of zeros
+     *
+     * @param size The number of positions, indexed from 0
+     */
+    FenwickTree(int size) {
+        tree = new int[size + 1];
+    }
+
+    /**
+     * Adds a value at a position
+     *
+     * @param pos The position, from 0 to size - 1
+     * @param delta The value to add
+     */
+    void add(int pos, int delta) {
+        for (int i = pos + 1; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    /**
+     * @param pos The last position to include, or -1 for an empty sum
+     * @return The sum of the values at positions 0 through pos
+     */
+    int sum(int pos) {
+        int total = 0;
+        for (int i = pos + 1; i > 0; i -= i & -i) total += tree[i];
+        return total;
+    }
+}
+
+/**
+ * An indexed max-heap of frames keyed by the position of their page's next use
+ * Used by the Optimal algorithm to find the page referenced furthest in the future
+ */
+class NextUseHeap {
+    private final int[] heap;       // Frame numbers in heap order
+    private final int[] heapIndex;  // Position of each frame within heap
+    private final long[] nextUse;   // Key of each frame
+    private int size;
+
+    /**
+     * Creates an empty heap
+     *
+     * @param numOfFrames The number of frames in memory
+     */
+    NextUseHeap(int numOfFrames) {
+        heap = new int[numOfFrames];
+        heapIndex = new int[numOfFrames];
+        nextUse = new long[numOfFrames];
+    }
+
+    /**
+     * @return The number of frames in the heap
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds a frame to the heap
+     *
+     * @param frame The frame to add, not already in the heap
+     * @param next The position of the next use of the frame's page
+     */
+    void add(int frame, long next) {
+        heap[size] = frame;
+        heapIndex[frame] = size;
+        nextUse[frame] = next;
+        siftUp(size++);
+    }
+
+    /**
+     * @return The frame whose page is next used furthest in the future
+     */
+    int furthest() {
+        return heap[0];
+    }
+
+    /**
+     * @param frame A frame in the heap
+     * @return The position of the next use of the frame's page
+     */
+    long nextUse(int frame) {
+        return nextUse[frame];
+    }
+
+    /**
+     * Changes the key of a frame already in the heap
+     *
+     * @param frame A frame in the heap
+     * @param next The new position of the next use of the frame's page
+     */
+    void setNextUse(int frame, long next) {
+        long old = nextUse[frame];
+        nextUse[frame] = next;
+        if (next > old) siftUp(heapIndex[frame]);
+        else siftDown(heapIndex[frame]);
+    }
+
+    private void siftUp(int i) {
+        int frame = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (nextUse[heap[parent]] >= nextUse[frame]) break;
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(frame, i);
+    }
+
+    private void siftDown(int i) {
+        int frame = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && nextUse[heap[child + 1]] > nextUse[heap[child]]) child++;
+            if (nextUse[heap[child]] <= nextUse[frame]) break;
+            place(heap[child], i);
+            i = child;
+        }
+        place(frame, i);
+    }
+
+    private void place(int frame, int i) {
+        heap[i] = frame;
+        heapIndex[frame] = i;
+    }
+}
+
+
+/**
+ * A page replacement policy fed one reference at a time, so it can follow a live stream of accesses
+ * Implementations allocate nothing per reference
+ */
+interface ReplacementPolicy {
+    int HIT = -1;   // Result of a reference to a page already in memory
+    int MISS = -2;  // Result of a page fault that filled an empty frame
+
+    /**
+     * References a page, loading it into memory if needed
+     *
+     * @param page The page referenced, never negative
+     * @return HIT, MISS, or on a page fault that replaced a page, the page evicted
+     */
+    int access(int page);
+
+    /**
+     * References a page for reading or writing, loading it into memory if needed
+     * Policies that do not tell modified pages apart treat a write as any other reference
+     *
+     * @param page The page referenced, never negative
+     * @param write true if the page is written, false if it is only read
+     * @return HIT, MISS, or on a page fault that replaced a page, the page evicted
+     */
+    default int access(int page, boolean write) {
+        return access(page);
+    }
+
+    /**
+     * References pages in order, as if by calling access on each
+     *
+     * @param pages Holds the pages referenced
+     * @param count The number of pages referenced, from the start of pages
+     */
+    default void accessAll(int[] pages, int count) {
+        for (int i = 0; i < count; i++) {
+            access(pages[i]);
+        }
+    }
+
+    /**
+     * Empties memory and zeroes the statistics
+     */
+    void reset();
+
+    /**
+     * @return The number of references since creation or the last reset
+     */
+    long references();
+
+    /**
+     * @return The number of page faults since creation or the last reset
+     */
+    long faults();
+}
+
+/**
+ * Provides the statistics of a replacement policy, leaving subclasses only the replacement itself
+ */
+abstract class AbstractReplacementPolicy implements ReplacementPolicy {
+    private long references;
+    private long faults;
+
+    @Override
+    public final int access(int page) {
+        references++;
+        int result = reference(page);
+        if (result != HIT) faults++;
+        return result;
+    }
+
+    // Overridden so the loop calls reference directly rather than through the interface
+    @Override
+    public final void accessAll(int[] pages, int count) {
+        long faults = 0;
+        for (int i = 0; i < count; i++) {
+            if (reference(pages[i]) != HIT) faults++;
+        }
+        this.references += count;
+        this.faults += faults;
+    }
+
+    @Override
+    public final void reset() {
+        references = 0;
+        faults = 0;
+        clear();
+    }
+
+    @Override
+    public final long references() {
+        return references;
+    }
+
+    @Override
+    public final long faults() {
+        return faults;
+    }
+
+    /**
+     * References a page, see ReplacementPolicy.access
+     *
+     * @param page The page referenced
+     * @return HIT, MISS, or the page evicted
+     */
+    protected abstract int reference(int page);
+
+    /**
+     * Empties memory
+     */
+    protected abstract void clear();
+}
+
+/**
+ * Wraps a replacement policy to measure it: the faults in each window of references, how soon
+ * evicted pages are referenced again, and the time spent in the policy per reference
+ * Recording costs a little on every reference, so a policy is only wrapped when it is measured
+ * Reuse distances are counted in power of two buckets, bucket k holding distances from 2^k up to
+ * 2^(k+1) - 1 references after the eviction
+ */
+final class InstrumentedPolicy implements ReplacementPolicy {
+    static final String CSV_HEADER = "algorithm,metric,bucket,value";
+
+    private final ReplacementPolicy policy;
+    private final int window;                              // References per window of the timeline
+    private long[] windowFaults = new long[64];            // Faults in each window
+    private final long[] reuseDistances = new long[64];    // Evictions in each reuse distance bucket
+    private final PageIndex evictedAt = new PageIndex(64); // Time each evicted page, not yet referenced again, was evicted
+    private int[] results = new int[0];                    // Results of the block being timed
+    private long nanos;                                    // Time spent in the policy
+
+    /**
+     * Wraps a policy
+     *
+     * @param policy The policy measured, which should not be used except through this wrapper
+     * @param window The number of references in each window of the fault timeline, at least 1
+     * @throws IllegalArgumentException If window is less than 1
+     */
+    InstrumentedPolicy(ReplacementPolicy policy, int window) {
+        if (window < 1) throw new IllegalArgumentException("window must be positive");
+        this.policy = policy;
+        this.window = window;
+    }
+
+    @Override
+    public int access(int page) {
+        long start = System.nanoTime();
+        int result = policy.access(page);
+        nanos += System.nanoTime() - start;
+        record(page, result, policy.references() - 1);
+        return result;
+    }
+
+    // Times the whole block at once, as timing each reference would cost more than most references
+    @Override
+    public void accessAll(int[] pages, int count) {
+        if (results.length < count) results = new int[count];
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            results[i] = policy.access(pages[i]);
+        }
+        nanos += System.nanoTime() - start;
+
+        long time = policy.references() - count;
+        for (int i = 0; i < count; i++) {
+            record(pages[i], results[i], time + i);
+        }
+    }
+
+    @Override
+    public void reset() {
+        policy.reset();
+        Arrays.fill(windowFaults, 0);
+        Arrays.fill(reuseDistances, 0);
+        evictedAt.clear();
+        nanos = 0;
+    }
+
+    @Override
+    public long references() {
+        return policy.references();
+    }
+
+    @Override
+    public long faults() {
+        return policy.faults();
+    }
+
+    /**
+     * @return The average nanoseconds spent in the policy per reference, 0 if there were none
+     */
+    double nanosPerReference() {
+        return policy.references() == 0 ? 0 : (double) nanos / policy.references();
+    }
+
+    /**
+     * Prints the measurements as CSV rows matching CSV_HEADER: faults_in_window for each window of
+     * references, evictions_by_reuse_distance for each bucket from its smallest distance, plus
+     * bucket never for pages not referenced again, and nanos_per_reference
+     *
+     * @param algorithm Name of the policy, the first column of every row
+     * @param out The stream to print to
+     */
+    void writeCSV(String algorithm, PrintStream out) {
+        long numOfWindows = (policy.references() + window - 1) / window;
+        for (int w = 0; w < numOfWindows; w++) {
+            // windowFaults only grows when a fault is recorded, so the last windows may have no entry
+            out.println(algorithm + ",faults_in_window," + w + "," + (w < windowFaults.length ? windowFaults[w] : 0));
+        }
+        for (int k = 0; k < reuseDistances.length; k++) {
+            if (reuseDistances[k] != 0)
+                out.println(algorithm + ",evictions_by_reuse_distance," + (1L << k) + "," + reuseDistances[k]);
+        }
+        out.println(algorithm + ",evictions_by_reuse_distance,never," + evictedAt.size());
+        out.printf("%s,nanos_per_reference,,%.2f%n", algorithm, nanosPerReference());
+    }
+
+    // Records the result of the reference to page made at time
+    private void record(int page, int result, long time) {
+        if (result == HIT) return;
+
+        int w = Math.toIntExact(time / window);
+        if (w >= windowFaults.length) windowFaults = Arrays.copyOf(windowFaults, Math.max(w + 1, windowFaults.length * 2));
+        windowFaults[w]++;
+
+        long evicted = evictedAt.getLong(page);
+        if (evicted != -1) {
+            reuseDistances[63 - Long.numberOfLeadingZeros(time - evicted)]++;
+            evictedAt.remove(page);
+        }
+        if (result >= 0) evictedAt.putLong(result, time);
+    }
+}
+
+/**
+ * Memory managed by the FIFO algorithm, replacing pages in the order they were loaded
+ */
+final class FIFOPolicy extends AbstractReplacementPolicy {
+    private final int[] frames;          // Page held by each frame, or -1 if empty
+    private final PageIndex pageFrames;  // Frame holding each page in memory
+    private int oldest;                  // Index of oldest frame
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory
+     */
+    FIFOPolicy(int numOfFrames) {
+        frames = new int[numOfFrames];
+        pageFrames = new PageIndex(numOfFrames);
+        clear();
+    }
+
+    @Override
+    protected int reference(int page) {
+        if (pageFrames.get(page) != -1) return HIT;
+
+        // Page fault, copy new page into oldest page frame
+        int evicted = frames[oldest];
+        if (evicted != -1) pageFrames.remove(evicted);
+        frames[oldest] = page;
+        pageFrames.put(page, oldest);
+        // Frames are filled sequentially, thus the next-oldest frame is the next one in the list
+        oldest = (oldest + 1) % frames.length;
+        return evicted == -1 ? MISS : evicted;
+    }
+
+    @Override
+    protected void clear() {
+        Arrays.fill(frames, -1);
+        pageFrames.clear();
+        oldest = 0;
+    }
+}
+
+/**
+ * Finds a page by comparing the frames one at a time
+ */
+final class ScalarFrameSearch implements FrameSearch {
+    @Override
+    public int indexOf(int[] frames, int count, int page) {
+        for (int i = 0; i < count; i++) {
+            if (frames[i] == page) return i;
+        }
+        return -1;
+    }
+}
+
+/**
+ * Memory managed by the FIFO algorithm that finds pages by scanning the frames instead of
+ * through an index, which for few frames can beat hashing
+ */
+final class ScanningFIFOPolicy extends AbstractReplacementPolicy {
+    private final int[] frames;        // Page held by each frame
+    private final FrameSearch search;
+    private int used;                  // Number of frames holding a page
+    private int oldest;                // Index of oldest frame
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory
+     * @param search How to find a page among the frames
+     */
+    ScanningFIFOPolicy(int numOfFrames, FrameSearch search) {
+        frames = new int[numOfFrames];
+        this.search = search;
+    }
+
+    @Override
+    protected int reference(int page) {
+        if (search.indexOf(frames, used, page) != -1) return HIT;
+
+        int evicted = used < frames.length ? MISS : frames[oldest];
+        if (used < frames.length) used++;
+        frames[oldest] = page;
+        oldest = (oldest + 1) % frames.length;
+        return evicted;
+    }
+
+    @Override
+    protected void clear() {
+        used = 0;
+        oldest = 0;
+    }
+}
+
+/**
+ * Memory managed by the LRU algorithm
+ * Frames are kept in a doubly-linked recency list threaded through the frame slots, so both
+ * hits and evictions cost O(1)
+ */
+final class LRUPolicy extends AbstractReplacementPolicy {
+    private final int[] frames;          // Page held by each frame
+    private final FrameLists recency;    // Frames from most to least recently used
+    private final PageIndex pageFrames;  // Frame holding each page in memory
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory
+     */
+    LRUPolicy(int numOfFrames) {
+        frames = new int[numOfFrames];
+        recency = new FrameLists(numOfFrames, 1);
+        pageFrames = new PageIndex(numOfFrames);
+    }
+
+    @Override
+    protected int reference(int page) {
+        int index = pageFrames.get(page);
+        if (index != -1) {
+            // Page is in memory, it becomes the most recently used
+            recency.moveToFirst(0, index);
+            return HIT;
+        }
+
+        int evicted = MISS;
+        if (recency.size(0) < frames.length)
+            index = recency.size(0);  // Fill an empty frame
+        else {
+            // The least recently used page will be removed
+            index = recency.last(0);
+            recency.remove(0, index);
+            evicted = frames[index];
+            pageFrames.remove(evicted);
+        }
+        frames[index] = page;
+        pageFrames.put(page, index);
+        recency.addFirst(0, index);
+        return evicted;
+    }
+
+    @Override
+    protected void clear() {
+        recency.clear();
+        pageFrames.clear();
+    }
+}
+
+/**
+ * Memory managed by the Second Chance algorithm
+ * A hand sweeps the frames in order, clearing reference bits, and replaces the first page whose
+ * reference bit is already clear
+ * Pages are kept in a flat array and reference bits packed 64 to a long, so the hand skips a whole
+ * word of referenced frames at once by looking for its first clear bit
+ */
+final class SecondChancePolicy extends AbstractReplacementPolicy {
+    private final int[] frames;          // Page held by each frame, or -1 if empty
+    private final long[] referenced;     // Reference bit of frame i is bit i % 64 of word i / 64
+    private final long lastWordMask;     // Bits of the last word that belong to frames
+    private final PageIndex pageFrames;  // Frame holding each page in memory
+    private int replace;                 // Pointer to the frame to be considered for replacement
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory
+     */
+    SecondChancePolicy(int numOfFrames) {
+        frames = new int[numOfFrames];
+        referenced = new long[(numOfFrames + 63) >>> 6];
+        lastWordMask = (numOfFrames & 63) == 0 ? -1L : (1L << numOfFrames) - 1;
+        pageFrames = new PageIndex(numOfFrames);
+        clear();
+    }
+
+    @Override
+    protected int reference(int page) {
+        int index = pageFrames.get(page);
+        if (index != -1) {
+            // If page is found in memory, set r-bit to 1
+            referenced[index >>> 6] |= 1L << index;
+            return HIT;
+        }
+
+        // Once a suitable frame is found, replace
+        replace = sweep(replace);
+        int evicted = frames[replace];
+        if (evicted != -1) pageFrames.remove(evicted);
+        frames[replace] = page;
+        pageFrames.put(page, replace);
+
+        // Increment replace
+        replace = replace + 1 == frames.length ? 0 : replace + 1;
+        return evicted == -1 ? MISS : evicted;
+    }
+
+    // Moves the hand from a frame to the first frame whose r-bit is 0, clearing the r-bits passed over
+    // If every r-bit is 1 the hand goes all the way around and stops where it started
+    private int sweep(int hand) {
+        while (true) {
+            int word = hand >>> 6;
+            long ahead = (-1L << hand) & (word == referenced.length - 1 ? lastWordMask : -1L);
+            long unreferenced = ~referenced[word] & ahead;
+            if (unreferenced != 0) {
+                // Clear the r-bits from the hand up to the frame found
+                int found = (word << 6) + Long.numberOfTrailingZeros(unreferenced);
+                referenced[word] &= ~(ahead & ((1L << found) - 1));
+                return found;
+            }
+
+            // Every frame left in this word is referenced, clear them all and move to the next word
+            referenced[word] &= ~ahead;
+            hand = word + 1 == referenced.length ? 0 : (word + 1) << 6;
+        }
+    }
+
+    @Override
+    protected void clear() {
+        // No pages loaded yet
+        Arrays.fill(frames, -1);
+        Arrays.fill(referenced, 0);
+        pageFrames.clear();
+        replace = 0;
+    }
+}
+
+/**
+ * Memory managed by the Enhanced Second Chance algorithm, which prefers to replace pages that are
+ * not modified, as replacing a modified page first costs writing it back to disk
+ * Each frame is in one of four classes by its reference and modify bits: (0,0) is replaced first,
+ * then (0,1), (1,0) and (1,1). The hand first looks once around for a (0,0) frame without changing
+ * anything, then once around for a (0,1) frame, clearing reference bits as it passes, and repeats
+ */
+final class EnhancedSecondChancePolicy extends AbstractReplacementPolicy {
+    private final int[] frames;          // Page held by each frame, or -1 if empty
+    private final boolean[] referenced;  // Reference bit of each frame
+    private final boolean[] modified;    // Modify bit of each frame
+    private final PageIndex pageFrames;  // Frame holding each page in memory
+    private int replace;                 // Pointer to the frame to be considered for replacement
+    private boolean writing;             // Whether the reference being made is a write
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory, at least 1
+     * @throws IllegalArgumentException If numOfFrames is less than 1, as the hand would never find a victim
+     */
+    EnhancedSecondChancePolicy(int numOfFrames) {
+        if (numOfFrames < 1) throw new IllegalArgumentException("number of frames must be positive");
+        frames = new int[numOfFrames];
+        referenced = new boolean[numOfFrames];
+        modified = new boolean[numOfFrames];
+        pageFrames = new PageIndex(numOfFrames);
+        clear();
+    }
+
+    @Override
+    public int access(int page, boolean write) {
+        writing = write;
+        int result = access(page);
+        writing = false;
+        return result;
+    }
+
+    @Override
+    protected int reference(int page) {
+        int index = pageFrames.get(page);
+        if (index != -1) {
+            referenced[index] = true;
+            if (writing) modified[index] = true;
+            return HIT;
+        }
+
+        replace = findVictim();
+        int evicted = frames[replace];
+        if (evicted != -1) pageFrames.remove(evicted);
+        frames[replace] = page;
+        // The reference loading the page sets its reference bit, or the next sweep could replace it first
+        referenced[replace] = true;
+        modified[replace] = writing;
+        pageFrames.put(page, replace);
+
+        replace = replace + 1 == frames.length ? 0 : replace + 1;
+        return evicted == -1 ? MISS : evicted;
+    }
+
+    // Finds the frame to replace, starting from the hand
+    private int findVictim() {
+        int n = frames.length;
+        while (true) {
+            // Look for (0,0), changing nothing
+            for (int i = 0, frame = replace; i < n; i++, frame = frame + 1 == n ? 0 : frame + 1) {
+                if (!referenced[frame] && !modified[frame]) return frame;
+            }
+            // Look for (0,1), giving referenced frames a second chance
+            for (int i = 0, frame = replace; i < n; i++, frame = frame + 1 == n ? 0 : frame + 1) {
+                if (!referenced[frame] && modified[frame]) return frame;
+                referenced[frame] = false;
+            }
+        }
+    }
+
+    @Override
+    protected void clear() {
+        // No pages loaded yet
+        Arrays.fill(frames, -1);
+        Arrays.fill(referenced, false);
+        Arrays.fill(modified, false);
+        pageFrames.clear();
+        replace = 0;
+        writing = false;
+    }
+}
+
+/**
+ * Wraps a replacement policy to count the modified pages it evicts, each of which must be
+ * written back to disk before its frame is reused
+ */
+final class DirtyTrackingPolicy implements ReplacementPolicy {
+    private final ReplacementPolicy policy;
+    private final PageIndex dirty = new PageIndex(64);  // Pages in memory written since they were loaded
+    private long writeBacks;
+
+    /**
+     * Wraps a policy
+     *
+     * @param policy The policy tracked, which should not be used except through this wrapper
+     */
+    DirtyTrackingPolicy(ReplacementPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public int access(int page) {
+        return access(page, false);
+    }
+
+    @Override
+    public int access(int page, boolean write) {
+        int result = policy.access(page, write);
+        if (result >= 0 && dirty.get(result) != -1) {
+            dirty.remove(result);
+            writeBacks++;
+        }
+        if (write) dirty.put(page, 1);
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        policy.reset();
+        dirty.clear();
+        writeBacks = 0;
+    }
+
+    @Override
+    public long references() {
+        return policy.references();
+    }
+
+    @Override
+    public long faults() {
+        return policy.faults();
+    }
+
+    /**
+     * @return The number of modified pages evicted since creation or the last reset
+     */
+    long writeBacks() {
+        return writeBacks;
+    }
+}
+
+/**
+ * Memory managed by the Adaptive Replacement Cache (ARC) algorithm
+ * Resident pages are split between T1, pages referenced once recently, and T2, pages referenced at
+ * least twice. B1 and B2 remember pages recently evicted from T1 and T2, and a reference to one of
+ * them shifts the target size p of T1 toward whichever list would have kept the page
+ */
+final class ARCPolicy extends AbstractReplacementPolicy {
+    private static final int T1 = 0, T2 = 1, B1 = 2, B2 = 3;
+
+    private final int numOfFrames;
+    private final int[] pages;        // Page of each node
+    private final int[] listOf;       // List holding each node
+    private final FrameLists lists;   // T1, T2, B1 and B2, each from most to least recently used
+    private final PageIndex nodes;    // Node of each page in any list
+    private final int[] freeNodes;    // Stack of unused nodes
+    private int numFree;
+    private int target;               // Target size p of T1
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory
+     */
+    ARCPolicy(int numOfFrames) {
+        this.numOfFrames = numOfFrames;
+        // Resident pages and remembered pages together never exceed twice the frames
+        int numOfNodes = 2 * numOfFrames;
+        pages = new int[numOfNodes];
+        listOf = new int[numOfNodes];
+        lists = new FrameLists(numOfNodes, 4);
+        nodes = new PageIndex(numOfNodes);
+        freeNodes = new int[numOfNodes];
+        clear();
+    }
+
+    @Override
+    protected int reference(int page) {
+        int node = nodes.get(page);
+        int list = node == -1 ? -1 : listOf[node];
+
+        if (list == T1 || list == T2) {
+            move(node, T2);
+            return HIT;
+        }
+        if (list == B1) {
+            // T1 evicted this page too early, so T1 should grow
+            int delta = lists.size(B1) >= lists.size(B2) ? 1 : lists.size(B2) / lists.size(B1);
+            target = Math.min(numOfFrames, target + delta);
+            int evicted = replace(false);
+            move(node, T2);
+            return evicted;
+        }
+        if (list == B2) {
+            // T2 evicted this page too early, so T1 should shrink
+            int delta = lists.size(B2) >= lists.size(B1) ? 1 : lists.size(B1) / lists.size(B2);
+            target = Math.max(0, target - delta);
+            int evicted = replace(true);
+            move(node, T2);
+            return evicted;
+        }
+
+        // Page has not been seen recently
+        int evicted = MISS;
+        int sizeOfL1 = lists.size(T1) + lists.size(B1);
+        if (sizeOfL1 == numOfFrames) {
+            if (lists.size(T1) < numOfFrames) {
+                discard(lists.last(B1));
+                evicted = replace(false);
+            }
+            else {
+                evicted = pages[lists.last(T1)];
+                discard(lists.last(T1));
+            }
+        }
+        else {
+            int total = sizeOfL1 + lists.size(T2) + lists.size(B2);
+            if (total >= numOfFrames) {
+                if (total == 2 * numOfFrames) discard(lists.last(B2));
+                evicted = replace(false);
+            }
+        }
+
+        node = freeNodes[--numFree];
+        pages[node] = page;
+        nodes.put(page, node);
+        listOf[node] = T1;
+        lists.addFirst(T1, node);
+        return evicted;
+    }
+
+    @Override
+    protected void clear() {
+        lists.clear();
+        nodes.clear();
+        numFree = 0;
+        for (int i = 0; i < freeNodes.length; i++) freeNodes[numFree++] = freeNodes.length - 1 - i;
+        target = 0;
+    }
+
+    // Frees a frame if memory is full, by evicting from T1 or T2 depending on the target size of T1
+    // Returns the page evicted, or MISS if a frame was already free
+    private int replace(boolean referencedInB2) {
+        if (lists.size(T1) + lists.size(T2) < numOfFrames) return MISS;
+        int sizeOfT1 = lists.size(T1);
+        int node = sizeOfT1 >= 1 && ((referencedInB2 && sizeOfT1 == target) || sizeOfT1 > target)
+                ? lists.last(T1) : lists.last(T2);
+        move(node, listOf[node] == T1 ? B1 : B2);
+        return pages[node];
+    }
+
+    // Moves a node to the front of a list
+    private void move(int node, int list) {
+        lists.remove(listOf[node], node);
+        listOf[node] = list;
+        lists.addFirst(list, node);
+    }
+
+    // Forgets a node entirely
+    private void discard(int node) {
+        lists.remove(listOf[node], node);
+        nodes.remove(pages[node]);
+        freeNodes[numFree++] = node;
+    }
+}
+
+/**
+ * Memory managed by the full 2Q algorithm
+ * Pages referenced for the first time enter A1in, a FIFO queue of about a quarter of the frames.
+ * Pages evicted from A1in are remembered in A1out, and are promoted to Am, an LRU queue, if they
+ * are referenced again while remembered. A single scan therefore passes through A1in without
+ * disturbing the pages in Am
+ */
+final class TwoQueuePolicy extends AbstractReplacementPolicy {
+    private static final int A1IN = 0, AM = 1;
+
+    private final int[] frames;            // Page held by each frame
+    private final int[] queueOf;           // Queue holding each frame
+    private final FrameLists resident;     // A1in and Am, each from newest to oldest
+    private final PageIndex pageFrames;    // Frame holding each page in memory
+    private final int maxIn;               // Size of A1in above which it gives up frames
+    private int used;                      // Number of frames filled so far
+
+    private final int[] ghostPages;        // Page remembered in each A1out slot
+    private final FrameLists ghosts;       // A1out from newest to oldest
+    private final PageIndex ghostSlots;    // A1out slot of each remembered page
+    private final int[] freeGhosts;        // Stack of unused A1out slots
+    private int numFreeGhosts;
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory
+     */
+    TwoQueuePolicy(int numOfFrames) {
+        frames = new int[numOfFrames];
+        queueOf = new int[numOfFrames];
+        resident = new FrameLists(numOfFrames, 2);
+        pageFrames = new PageIndex(numOfFrames);
+        maxIn = Math.max(1, numOfFrames / 4);
+
+        int maxOut = Math.max(1, numOfFrames / 2);
+        ghostPages = new int[maxOut];
+        ghosts = new FrameLists(maxOut, 1);
+        ghostSlots = new PageIndex(maxOut);
+        freeGhosts = new int[maxOut];
+        clear();
+    }
+
+    @Override
+    protected int reference(int page) {
+        int frame = pageFrames.get(page);
+        if (frame != -1) {
+            // Pages in A1in keep their place, so a burst of references counts as one
+            if (queueOf[frame] == AM) resident.moveToFirst(AM, frame);
+            return HIT;
+        }
+
+        // A page remembered in A1out has been referenced again soon after eviction
+        int ghost = ghostSlots.get(page);
+        if (ghost != -1) forget(ghost);
+
+        int evicted = MISS;
+        if (used < frames.length)
+            frame = used++;
+        else {
+            frame = reclaimFrame();
+            evicted = frames[frame];
+        }
+        frames[frame] = page;
+        pageFrames.put(page, frame);
+        queueOf[frame] = ghost != -1 ? AM : A1IN;
+        resident.addFirst(queueOf[frame], frame);
+        return evicted;
+    }
+
+    @Override
+    protected void clear() {
+        resident.clear();
+        pageFrames.clear();
+        used = 0;
+        ghosts.clear();
+        ghostSlots.clear();
+        numFreeGhosts = 0;
+        for (int i = 0; i < freeGhosts.length; i++) freeGhosts[numFreeGhosts++] = i;
+    }
+
+    // Evicts a page from a full memory and returns its frame
+    private int reclaimFrame() {
+        int frame;
+        if (resident.size(A1IN) > maxIn || resident.size(AM) == 0) {
+            // Evict the oldest page of A1in and remember it in A1out
+            frame = resident.last(A1IN);
+            resident.remove(A1IN, frame);
+            if (numFreeGhosts == 0) forget(ghosts.last(0));
+            int ghost = freeGhosts[--numFreeGhosts];
+            ghostPages[ghost] = frames[frame];
+            ghostSlots.put(frames[frame], ghost);
+            ghosts.addFirst(0, ghost);
+        }
+        else {
+            frame = resident.last(AM);
+            resident.remove(AM, frame);
+        }
+        pageFrames.remove(frames[frame]);
+        return frame;
+    }
+
+    // Removes a page from A1out
+    private void forget(int ghost) {
+        ghosts.remove(0, ghost);
+        ghostSlots.remove(ghostPages[ghost]);
+        freeGhosts[numFreeGhosts++] = ghost;
+    }
+}
+
+/**
+ * Memory managed by the CLOCK-Pro algorithm
+ * All pages sit on one clock as hot or cold resident pages, or as non-resident cold pages. A cold page
+ * is in its test period from when it is loaded until one of the hands ends it; a non-resident page
+ * stays on the clock only for the rest of its test period. A cold page referenced during its test
+ * period becomes hot. Three hands sweep the clock, and every page they move is put at the head, just
+ * behind the hot hand:
+ *   the cold hand frees a frame, promoting referenced cold pages in their test period, moving other
+ *   referenced cold pages to the head, and evicting the first unreferenced cold page
+ *   the hot hand demotes unreferenced hot pages, and ends the test period of every cold page it passes
+ *   the test hand ends test periods whenever more than numOfFrames non-resident pages are kept
+ * A test period ending in reuse gives cold pages one more frame, and one ending without reuse takes
+ * one away. Every step either clears a reference bit or changes the status of a page, so each sweep
+ * ends within a few turns of the clock
+ */
+final class ClockProPolicy extends AbstractReplacementPolicy {
+    private static final int NONE = -1;
+
+    private final int numOfFrames;
+    private final int[] pages;          // Page of each node
+    private final boolean[] hot;        // Whether each node is hot, otherwise cold
+    private final boolean[] resident;   // Whether each node's page is in memory
+    private final boolean[] test;       // Whether each cold node is in its test period
+    private final boolean[] referenced; // Reference bit of each resident node
+    private final int[] next, prev;     // Clock order of nodes
+    private final PageIndex nodes;      // Node of each page on the clock
+    private final int[] freeNodes;      // Stack of unused nodes
+    private int numFree;
+
+    private int handHot = NONE, handCold = NONE, handTest = NONE;
+    private int countHot, countCold, countNonResident;
+    private int coldTarget;             // Number of frames cold pages may hold
+    private int evicted;                // Page evicted by the current reference, or MISS
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory
+     */
+    ClockProPolicy(int numOfFrames) {
+        this.numOfFrames = numOfFrames;
+        // Up to numOfFrames resident and numOfFrames non-resident pages, plus one being added
+        int numOfNodes = 2 * numOfFrames + 1;
+        pages = new int[numOfNodes];
+        hot = new boolean[numOfNodes];
+        resident = new boolean[numOfNodes];
+        test = new boolean[numOfNodes];
+        referenced = new boolean[numOfNodes];
+        next = new int[numOfNodes];
+        prev = new int[numOfNodes];
+        nodes = new PageIndex(numOfNodes);
+        freeNodes = new int[numOfNodes];
+        clear();
+    }
+
+    @Override
+    protected int reference(int page) {
+        int node = nodes.get(page);
+        if (node != NONE && resident[node]) {
+            referenced[node] = true;
+            return HIT;
+        }
+
+        evicted = MISS;
+        boolean reused = node != NONE;
+        if (reused) {
+            // Reused during its test period, so cold pages deserve more frames and this page is hot
+            // It is taken off the clock first, so the hands cannot forget it while a frame is freed
+            if (coldTarget < numOfFrames) coldTarget++;
+            delete(node);
+            countNonResident--;
+        }
+        while (countHot + countCold >= numOfFrames) runHandCold();
+
+        // A new page starts cold, in its test period
+        node = add(page);
+        if (reused) {
+            hot[node] = true;
+            test[node] = false;
+            countHot++;
+            while (countHot > numOfFrames - coldTarget) runHandHot();
+        }
+        else {
+            countCold++;
+        }
+        return evicted;
+    }
+
+    @Override
+    protected void clear() {
+        nodes.clear();
+        numFree = 0;
+        for (int i = 0; i < freeNodes.length; i++) freeNodes[numFree++] = freeNodes.length - 1 - i;
+        handHot = handCold = handTest = NONE;
+        countHot = countCold = countNonResident = 0;
+        coldTarget = numOfFrames;
+    }
+
+    // Puts a new resident cold page in its test period at the head
+    private int add(int page) {
+        int node = freeNodes[--numFree];
+        pages[node] = page;
+        hot[node] = false;
+        resident[node] = true;
+        test[node] = true;
+        referenced[node] = false;
+        nodes.put(page, node);
+        link(node);
+        return node;
+    }
+
+    // Takes a node off the clock for good, moving back any hand pointing at it
+    private void delete(int node) {
+        unlink(node);
+        nodes.remove(pages[node]);
+        freeNodes[numFree++] = node;
+    }
+
+    // Puts a node at the head of the clock, just behind the hot hand, so the hot hand reaches it last
+    private void link(int node) {
+        if (handHot == NONE) {
+            next[node] = prev[node] = node;
+            handHot = handCold = handTest = node;
+        }
+        else {
+            next[node] = handHot;
+            prev[node] = prev[handHot];
+            next[prev[handHot]] = node;
+            prev[handHot] = node;
+        }
+    }
+
+    // Takes a node out of clock order, moving back any hand pointing at it so the hand next reaches its successor
+    private void unlink(int node) {
+        if (next[node] == node) {
+            handHot = handCold = handTest = NONE;
+        }
+        else {
+            next[prev[node]] = next[node];
+            prev[next[node]] = prev[node];
+            if (handHot == node) handHot = prev[node];
+            if (handCold == node) handCold = prev[node];
+            if (handTest == node) handTest = prev[node];
+        }
+    }
+
+    // Ends the test period of a cold page, forgetting it if it is not resident
+    private void endTest(int node) {
+        test[node] = false;
+        if (!resident[node]) {
+            delete(node);
+            countNonResident--;
+        }
+        // Test period over without reuse, so cold pages deserve fewer frames
+        if (coldTarget > 1) coldTarget--;
+    }
+
+    private void runHandCold() {
+        int node = handCold;
+        if (!hot[node] && resident[node]) {
+            if (referenced[node]) {
+                referenced[node] = false;
+                if (test[node]) {
+                    // Referenced during its test period, promote
+                    hot[node] = true;
+                    test[node] = false;
+                    countCold--;
+                    countHot++;
+                    if (coldTarget < numOfFrames) coldTarget++;
+                }
+                else {
+                    // Referenced after its test period, so it stays cold but starts a new one
+                    test[node] = true;
+                }
+                unlink(node);
+                link(node);
+            }
+            else {
+                evicted = pages[node];
+                resident[node] = false;
+                countCold--;
+                if (test[node]) {
+                    // Keep the page on the clock for the rest of its test period
+                    countNonResident++;
+                    while (countNonResident > numOfFrames) runHandTest();
+                }
+                else {
+                    delete(node);
+                }
+            }
+        }
+        // The clock is empty once the only page on it is forgotten
+        if (handCold != NONE) handCold = next[handCold];
+        while (countHot > numOfFrames - coldTarget) runHandHot();
+    }
+
+    private void runHandHot() {
+        int node = handHot;
+        if (hot[node]) {
+            if (referenced[node]) referenced[node] = false;
+            else {
+                hot[node] = false;
+                countHot--;
+                countCold++;
+            }
+        }
+        else if (test[node]) {
+            endTest(node);
+        }
+        // The test hand is never behind the hot hand, which already ends test periods
+        if (handHot == NONE) return;
+        if (handTest == handHot) handTest = next[handTest];
+        handHot = next[handHot];
+    }
+
+    private void runHandTest() {
+        int node = handTest;
+        if (!hot[node] && test[node]) endTest(node);
+        if (handTest != NONE) handTest = next[handTest];
+    }
+}
+
+/**
+ * Memory managed by the LFU (least frequently used) algorithm
+ * Frames are grouped into buckets by reference count, kept in a list ordered by count, so the
+ * victim is always in the first bucket and a hit only moves a frame to the adjacent bucket.
+ * Within a bucket the least recently used page is evicted first. Counts start over when a page
+ * is loaded
+ */
+final class LFUPolicy extends AbstractReplacementPolicy {
+    private static final int NONE = -1;
+
+    private final int[] frames;          // Page held by each frame
+    private final int[] bucketOf;        // Bucket holding each frame
+    private final FrameLists buckets;    // Frames of each bucket, from most to least recently used
+    private final int[] count;           // Reference count of each bucket
+    private final int[] higher, lower;   // Neighbouring buckets in order of count
+    private final int[] freeBuckets;     // Stack of unused buckets
+    private final PageIndex pageFrames;  // Frame holding each page in memory
+    private int numFree;
+    private int lowest = NONE;           // Bucket with the lowest count
+    private int used;                    // Number of frames filled so far
+
+    /**
+     * Creates an empty memory
+     *
+     * @param numOfFrames The number of frames in memory
+     */
+    LFUPolicy(int numOfFrames) {
+        frames = new int[numOfFrames];
+        bucketOf = new int[numOfFrames];
+        pageFrames = new PageIndex(numOfFrames);
+        // Each frame may have a distinct count, plus one bucket created before another empties
+        int numOfBuckets = numOfFrames + 1;
+        buckets = new FrameLists(numOfFrames, numOfBuckets);
+        count = new int[numOfBuckets];
+        higher = new int[numOfBuckets];
+        lower = new int[numOfBuckets];
+        freeBuckets = new int[numOfBuckets];
+        clear();
+    }
+
+    @Override
+    protected int reference(int page) {
+        int frame = pageFrames.get(page);
+        if (frame != NONE) {
+            int bucket = bucketOf[frame];
+            int target = higher[bucket];
+            if (target == NONE || count[target] != count[bucket] + 1)
+                target = newBucket(count[bucket] + 1, bucket);
+            moveFrame(frame, target);
+            return HIT;
+        }
+
+        int evicted = MISS;
+        if (used < frames.length)
+            frame = used++;
+        else {
+            // Evict the least recently used of the least frequently used pages
+            frame = buckets.last(lowest);
+            evicted = frames[frame];
+            pageFrames.remove(evicted);
+            removeFrame(frame);
+        }
+        frames[frame] = page;
+        pageFrames.put(page, frame);
+
+        if (lowest == NONE || count[lowest] != 1) newBucket(1, NONE);
+        bucketOf[frame] = lowest;
+        buckets.addFirst(lowest, frame);
+        return evicted;
+    }
+
+    @Override
+    protected void clear() {
+        buckets.clear();
+        pageFrames.clear();
+        numFree = 0;
+        for (int i = 0; i < freeBuckets.length; i++) freeBuckets[numFree++] = i;
+        lowest = NONE;
+        used = 0;
+    }
+
+    // Creates an empty bucket just after another bucket, or first if after is NONE
+    private int newBucket(int references, int after) {
+        int bucket = freeBuckets[--numFree];
+        count[bucket] = references;
+        lower[bucket] = after;
+        higher[bucket] = after == NONE ? lowest : higher[after];
+        if (higher[bucket] != NONE) lower[higher[bucket]] = bucket;
+        if (after == NONE) lowest = bucket;
+        else higher[after] = bucket;
+        return bucket;
+    }
+
+    // Moves a frame to the front of another bucket
+    private void moveFrame(int frame, int bucket) {
+        removeFrame(frame);
+        bucketOf[frame] = bucket;
+        buckets.addFirst(bucket, frame);
+    }
+
+    // Takes a frame out of its bucket, dropping the bucket if it empties
+    private void removeFrame(int frame) {
+        int bucket = bucketOf[frame];
+        buckets.remove(bucket, frame);
+        if (buckets.size(bucket) > 0) return;
+
+        if (lower[bucket] != NONE) higher[lower[bucket]] = higher[bucket];
+        else lowest = higher[bucket];
+        if (higher[bucket] != NONE) lower[higher[bucket]] = lower[bucket];
+        freeBuckets[numFree++] = bucket;
+    }
+}
+
+/**
+ * Memory whose number of frames grows and shrinks with the demands of the process, rather than
+ * being fixed, tracking page faults and the resident set size after each reference
+ */
+abstract class VariableMemory {
+    private long references;
+    private long faults;
+    private long totalResidentSize;  // Sum of the resident set sizes after each reference
+
+    /**
+     * References a page, loading it into memory if needed
+     *
+     * @param page The page referenced, never negative
+     * @return true if the page was already in memory, false on a page fault
+     */
+    final boolean access(int page) {
+        boolean hit = reference(page, references++);
+        if (!hit) faults++;
+        totalResidentSize += residentSize();
+        return hit;
+    }
+
+    /**
+     * @return The number of references so far
+     */
+    final long references() {
+        return references;
+    }
+
+    /**
+     * @return The number of page faults so far
+     */
+    final long faults() {
+        return faults;
+    }
+
+    /**
+     * @return The resident set size averaged over every reference so far, 0 if there were none
+     */
+    final double averageResidentSize() {
+        return references == 0 ? 0 : (double) totalResidentSize / references;
+    }
+
+    /**
+     * @return The number of pages in memory
+     */
+    abstract int residentSize();
+
+    /**
+     * References a page, see access
+     *
+     * @param page The page referenced
+     * @param time The number of references before this one
+     * @return true if the page was already in memory
+     */
+    protected abstract boolean reference(int page, long time);
+}
+
+/**
+ * Memory managed by the Working Set algorithm, holding exactly the pages referenced in the last
+ * window references
+ * A ring buffer of the last window references, together with the time each page was last
+ * referenced, finds the one page that may leave the working set at each reference in O(1)
+ */
+final class WorkingSetMemory extends VariableMemory {
+    private final int[] recent;        // recent[t % window] is the page referenced at time t
+    private final PageIndex lastUse;   // Time of the last reference to each page in the working set
+
+    /**
+     * Creates an empty memory
+     *
+     * @param window The number of references making up the working set window, at least 1
+     * @throws IllegalArgumentException If window is less than 1
+     */
+    WorkingSetMemory(int window) {
+        if (window < 1) throw new IllegalArgumentException("window must be positive");
+        recent = new int[window];
+        lastUse = new PageIndex(Math.min(window, 1 << 16));
+    }
+
+    @Override
+    int residentSize() {
+        return lastUse.size();
+    }
+
+    @Override
+    protected boolean reference(int page, long time) {
+        // The working set before this reference covers times time - window up to time - 1
+        boolean hit = lastUse.getLong(page) != -1;
+
+        // The reference at time - window leaves the window, and its page the working set unless used since
+        int slot = (int) (time % recent.length);
+        if (time >= recent.length) {
+            int leaving = recent[slot];
+            if (lastUse.getLong(leaving) == time - recent.length) lastUse.remove(leaving);
+        }
+        recent[slot] = page;
+        lastUse.putLong(page, time);
+        return hit;
+    }
+}
+
+/**
+ * Memory managed by the Page Fault Frequency algorithm
+ * On a page fault, if more than threshold references have passed since the last fault the
+ * process is faulting rarely, so every page not referenced since the last fault is evicted
+ * Otherwise the faulting page is simply added. Resident pages are kept in LRU order, which
+ * puts the pages not referenced since the last fault at the tail, so each eviction costs O(1)
+ */
+final class PageFaultFrequencyMemory extends VariableMemory {
+    private final long threshold;       // Largest interval between faults that lets memory grow
+    private final PageIndex slots;      // Slot holding each resident page
+    private final FrameLists recency;   // Slots from most to least recently used
+    private int[] pages;                // Page held by each slot
+    private long[] lastUse;             // Time of the last reference to the page in each slot
+    private int[] freeSlots;            // Slots no longer holding a page
+    private int numFree;
+    private int numSlots;               // Slots ever used
+    private long lastFault = -1;        // Time of the last page fault
+
+    /**
+     * Creates an empty memory
+     *
+     * @param threshold The largest number of references between faults that still lets memory grow, at least 1
+     * @throws IllegalArgumentException If threshold is less than 1
+     */
+    PageFaultFrequencyMemory(int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("threshold must be positive");
+        this.threshold = threshold;
+        slots = new PageIndex(64);
+        recency = new FrameLists(64, 1);
+        pages = new int[64];
+        lastUse = new long[64];
+        freeSlots = new int[64];
+    }
+
+    @Override
+    int residentSize() {
+        return recency.size(0);
+    }
+
+    @Override
+    protected boolean reference(int page, long time) {
+        int slot = slots.get(page);
+        if (slot != -1) {
+            lastUse[slot] = time;
+            recency.moveToFirst(0, slot);
+            return true;
+        }
+
+        if (lastFault != -1 && time - lastFault > threshold) {
+            // Faults are rare, so release the pages not referenced since the last fault
+            for (int tail = recency.last(0); tail != -1 && lastUse[tail] < lastFault; tail = recency.last(0)) {
+                recency.remove(0, tail);
+                slots.remove(pages[tail]);
+                freeSlots[numFree++] = tail;
+            }
+        }
+
+        if (numFree > 0)
+            slot = freeSlots[--numFree];
+        else {
+            if (numSlots == pages.length) {
+                int capacity = pages.length * 2;
+                pages = Arrays.copyOf(pages, capacity);
+                lastUse = Arrays.copyOf(lastUse, capacity);
+                freeSlots = Arrays.copyOf(freeSlots, capacity);
+                recency.ensureSlots(capacity);
+            }
+            slot = numSlots++;
+        }
+        pages[slot] = page;
+        lastUse[slot] = time;
+        slots.put(page, slot);
+        recency.addFirst(0, slot);
+        lastFault = time;
+        return false;
+    }
+}
+
+/**
+ * Several processes taking turns on one processor, each referencing its own virtual memory
+ * with the same locus model as createRS but its own size of locus, rate of motion, probability
+ * of transition and scheduling quantum
+ * Processes run round robin, each for its quantum of references. The page numbers of process p
+ * are offset by p * pagesPerProcess so no two processes share a page. All per-process state is
+ * kept in primitive arrays so thousands of processes stay cheap
+ */
+final class MultiProcessWorkload {
+    private final int sizeOfVM;
+    private final int pagesPerProcess;  // Pages reserved for each process, enough for a locus starting at the last page
+    private final int[] sizeOfLocus;
+    private final int[] rateOfMotion;
+    private final double[] prob;
+    private final int[] quantum;
+    private final int[] start;          // Start of the current locus of each process
+    private final int[] burst;          // References made from the current locus of each process
+    private final SplittableRandom random;
+
+    /**
+     * Creates the processes, drawing each parameter uniformly from its range
+     * A range is an array of one value, or of the smallest and largest values
+     *
+     * @param numOfProcesses The number of processes
+     * @param sizeOfVM Size of the virtual memory of each process
+     * @param sizeOfLocus Range of the size of locus
+     * @param rateOfMotion Range of the rate of motion
+     * @param prob Range of the probability of a transition to a new location
+     * @param quantum Range of the number of references made each turn
+     * @param seed Seed of the random choices, so the same seed gives the same processes and references
+     * @throws IllegalArgumentException If a range is not one or two values or ends before it starts, or sizes, rates
+     *                                  or quanta are not positive
+     */
+    MultiProcessWorkload(int numOfProcesses, int sizeOfVM, int[] sizeOfLocus, int[] rateOfMotion,
+                         double[] prob, int[] quantum, long seed) {
+        if (numOfProcesses <= 0 || sizeOfVM <= 0 || min(sizeOfLocus) <= 0 || min(rateOfMotion) <= 0 || min(quantum) <= 0)
+            throw new IllegalArgumentException("processes, sizes, rates of motion and quanta must be positive");
+        if (prob.length < 1 || prob.length > 2)
+            throw new IllegalArgumentException("a range is one value or min,max");
+        if (descending(sizeOfLocus) || descending(rateOfMotion) || descending(quantum) || prob[prob.length - 1] < prob[0])
+            throw new IllegalArgumentException("range end must be >= start");
+        long pages = (long) sizeOfVM + sizeOfLocus[sizeOfLocus.length - 1];
+        if (pages * numOfProcesses > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too many pages for " + numOfProcesses + " processes");
+
+        this.sizeOfVM = sizeOfVM;
+        pagesPerProcess = (int) pages;
+        random = new SplittableRandom(seed);
+        this.sizeOfLocus = new int[numOfProcesses];
+        this.rateOfMotion = new int[numOfProcesses];
+        this.prob = new double[numOfProcesses];
+        this.quantum = new int[numOfProcesses];
+        start = new int[numOfProcesses];
+        burst = new int[numOfProcesses];
+        for (int p = 0; p < numOfProcesses; p++) {
+            this.sizeOfLocus[p] = draw(sizeOfLocus);
+            this.rateOfMotion[p] = draw(rateOfMotion);
+            this.prob[p] = prob.length == 1 ? prob[0] : prob[0] + random.nextDouble() * (prob[1] - prob[0]);
+            this.quantum[p] = draw(quantum);
+            start[p] = random.nextInt(sizeOfVM);
+        }
+    }
+
+    /**
+     * Generates the next references of the processes, continuing from the last call
+     *
+     * @param length Length of the reference string to generate
+     * @return The interleaved references of every process
+     */
+    ReferenceString generate(int length) {
+        int[] result = new int[length];
+        int size = 0;
+        for (int p = 0; size < length; p = (p + 1) % start.length) {
+            int base = p * pagesPerProcess;
+            for (int turn = Math.min(quantum[p], length - size); turn > 0; turn--) {
+                // After rateOfMotion references the locus moves, as in createRS
+                if (burst[p] == rateOfMotion[p]) {
+                    if (random.nextDouble() < prob[p])
+                        start[p] = random.nextInt(sizeOfVM);
+                    else
+                        start[p] = (start[p] + 1) % sizeOfVM;
+                    burst[p] = 0;
+                }
+                result[size++] = base + (int) (random.nextDouble() * sizeOfLocus[p] + start[p]);
+                burst[p]++;
+            }
+        }
+        return new ReferenceString(result);
+    }
+
+    /**
+     * @return The number of processes
+     */
+    int numOfProcesses() {
+        return start.length;
+    }
+
+    /**
+     * @return The number of page numbers reserved for each process
+     */
+    int pagesPerProcess() {
+        return pagesPerProcess;
+    }
+
+    /**
+     * @param page A page referenced by one of the processes
+     * @return The process the page belongs to
+     */
+    int processOf(int page) {
+        return page / pagesPerProcess;
+    }
+
+    private int draw(int[] range) {
+        if (range.length < 1 || range.length > 2)
+            throw new IllegalArgumentException("a range is one value or min,max");
+        return range.length == 1 ? range[0] : range[0] + random.nextInt(range[1] - range[0] + 1);
+    }
+
+    private static int min(int[] range) {
+        return range.length == 0 ? 0 : Math.min(range[0], range[range.length - 1]);
+    }
+
+    private static boolean descending(int[] range) {
+        return range.length > 0 && range[range.length - 1] < range[0];
+    }
+}
+
+/**
+ * Memory shared by several processes, each given a fixed share of the frames and replacing only
+ * its own pages by LRU
+ * Every process has its own recency list, all threaded through one set of frame slots
+ */
+final class LocalLRUPolicy extends AbstractReplacementPolicy {
+    private final int[] frames;          // Page held by each frame
+    private final int[] firstFrame;      // First of the contiguous frames given to each process
+    private final int[] numOfFrames;     // Number of frames given to each process
+    private final int pagesPerProcess;   // Page numbers of process p start at p * pagesPerProcess
+    private final FrameLists recency;    // Frames of each process from most to least recently used
+    private final PageIndex pageFrames;  // Frame holding each page in memory
+
+    /**
+     * Creates an empty memory, dividing the frames as evenly as possible among the processes
+     *
+     * @param numOfFrames The number of frames in memory
+     * @param numOfProcesses The number of processes
+     * @param pagesPerProcess The number of page numbers reserved for each process
+     * @throws IllegalArgumentException If there are fewer frames than processes
+     */
+    LocalLRUPolicy(int numOfFrames, int numOfProcesses, int pagesPerProcess) {
+        if (numOfFrames < numOfProcesses)
+            throw new IllegalArgumentException("local replacement needs at least one frame per process");
+        this.pagesPerProcess = pagesPerProcess;
+        frames = new int[numOfFrames];
+        firstFrame = new int[numOfProcesses];
+        this.numOfFrames = new int[numOfProcesses];
+        for (int p = 0, next = 0; p < numOfProcesses; p++) {
+            firstFrame[p] = next;
+            this.numOfFrames[p] = numOfFrames / numOfProcesses + (p < numOfFrames % numOfProcesses ? 1 : 0);
+            next += this.numOfFrames[p];
+        }
+        recency = new FrameLists(numOfFrames, numOfProcesses);
+        pageFrames = new PageIndex(numOfFrames);
+    }
+
+    @Override
+    protected int reference(int page) {
+        int process = page / pagesPerProcess;
+        int index = pageFrames.get(page);
+        if (index != -1) {
+            recency.moveToFirst(process, index);
+            return HIT;
+        }
+
+        int evicted = MISS;
+        if (recency.size(process) < numOfFrames[process])
+            index = firstFrame[process] + recency.size(process);  // Fill an empty frame of the process
+        else {
+            // The least recently used page of the process will be removed
+            index = recency.last(process);
+            recency.remove(process, index);
+            evicted = frames[index];
+            pageFrames.remove(evicted);
+        }
+        frames[index] = page;
+        pageFrames.put(page, index);
+        recency.addFirst(process, index);
+        return evicted;
+    }
+
+    @Override
+    protected void clear() {
+        recency.clear();
+        pageFrames.clear();
+    }
+}
+
+/*
+SAMPLE RUN
 
 Enter size of virtual memory:
 4096
@@ -350,16 +3811,26 @@ Enter number of frames:
 
 
 *** Page Faults Generated ***
-   Optimal: 2601
-       LRU: 5117
-2nd Chance: 5094
-      FIFO: 5089
+   Optimal: 2637
+       LRU: 5121
+2nd Chance: 5120
+Enh 2nd Ch: 5095
+      FIFO: 5107
+       ARC: 5187
+        2Q: 5253
+ CLOCK-Pro: 5190
+       LFU: 9334
 
 *** Relative Number of Faults Generated ***
-   Optimal: #########################
-       LRU: ##################################################
-2nd Chance: ##################################################
-      FIFO: ##################################################
+   Optimal: ##############
+       LRU: ###########################
+2nd Chance: ###########################
+Enh 2nd Ch: ###########################
+      FIFO: ###########################
+       ARC: ###########################
+        2Q: ############################
+ CLOCK-Pro: ###########################
+       LFU: ##################################################
 
 Do you want to run another test? Y/N
 Y
@@ -380,15 +3851,25 @@ Enter number of frames:
 
 *** Page Faults Generated ***
    Optimal: 19
-       LRU: 29
-2nd Chance: 27
-      FIFO: 48
+       LRU: 32
+2nd Chance: 34
+Enh 2nd Ch: 34
+      FIFO: 78
+       ARC: 36
+        2Q: 43
+ CLOCK-Pro: 60
+       LFU: 3995
 
 *** Relative Number of Faults Generated ***
-   Optimal: ###################
-       LRU: ##############################
-2nd Chance: ############################
-      FIFO: ##################################################
+   Optimal:
+       LRU:
+2nd Chance:
+Enh 2nd Ch:
+      FIFO:
+       ARC:
+        2Q:
+ CLOCK-Pro:
+       LFU: #################################################
 
 Do you want to run another test? Y/N
 Y
@@ -408,16 +3889,26 @@ Enter number of frames:
 
 
 *** Page Faults Generated ***
-   Optimal: 9147
-       LRU: 9906
-2nd Chance: 9906
-      FIFO: 9906
+   Optimal: 9205
+       LRU: 9918
+2nd Chance: 9918
+Enh 2nd Ch: 9918
+      FIFO: 9918
+       ARC: 9926
+        2Q: 9945
+ CLOCK-Pro: 9957
+       LFU: 9965
 
 *** Relative Number of Faults Generated ***
    Optimal: ##############################################
-       LRU: ##################################################
-2nd Chance: ##################################################
-      FIFO: ##################################################
+       LRU: #################################################
+2nd Chance: #################################################
+Enh 2nd Ch: #################################################
+      FIFO: #################################################
+       ARC: #################################################
+        2Q: #################################################
+ CLOCK-Pro: #################################################
+       LFU: ##################################################
 
 Do you want to run another test? Y/N
 Y
@@ -437,19 +3928,29 @@ Enter number of frames:
 
 
 *** Page Faults Generated ***
-   Optimal: 208
-       LRU: 310
-2nd Chance: 383
-      FIFO: 570
+   Optimal: 235
+       LRU: 345
+2nd Chance: 392
+Enh 2nd Ch: 397
+      FIFO: 595
+       ARC: 365
+        2Q: 533
+ CLOCK-Pro: 616
+       LFU: 8480
 
 *** Relative Number of Faults Generated ***
-   Optimal: ##################
-       LRU: ###########################
-2nd Chance: #################################
-      FIFO: ##################################################
+   Optimal: #
+       LRU: ##
+2nd Chance: ##
+Enh 2nd Ch: ##
+      FIFO: ###
+       ARC: ##
+        2Q: ###
+ CLOCK-Pro: ###
+       LFU: ##################################################
 
 Do you want to run another test? Y/N
 n
 
 Process finished with exit code 0
- */
\ No newline at end of file
+ */
@@ -0,0 +1,41 @@
+/*
+Project 4:      Performance of Page Replacement Algorithms
+Description:    Vector API frame search timed by the bench-search command of JustinHenleyCSCI331Proj4,
+                loaded only when jdk.incubator.vector is available
+Author:         Justin Henley, jahenley@mail.fhsu.edu
+Date:           2026-10-17
+ */
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Finds a page among the frames of memory by comparing as many frames at once as the
+ * processor's vector registers hold
+ * Uses the incubating Vector API, so this file is compiled and run with
+ *   javac --add-modules jdk.incubator.vector *.java
+ *   java --add-modules jdk.incubator.vector JustinHenleyCSCI331Proj4 ...
+ * Without the module FrameSearch.vector() cannot load this class and callers fall back to
+ * ScalarFrameSearch
+ */
+final class VectorFrameSearch implements FrameSearch {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public int indexOf(int[] frames, int count, int page) {
+        IntVector target = IntVector.broadcast(SPECIES, page);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+            VectorMask<Integer> found = IntVector.fromArray(SPECIES, frames, i).compare(VectorOperators.EQ, target);
+            if (found.anyTrue()) return i + found.firstTrue();
+        }
+
+        // Compare the frames left over, fewer than a vector's worth, one at a time
+        for (; i < count; i++) {
+            if (frames[i] == page) return i;
+        }
+        return -1;
+    }
+}